@@ -0,0 +1,120 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.dto.LineResult;
+import com.coding.challenge.dto.UploadResultAccumulator;
+import com.coding.challenge.dto.ValidationError;
+import com.coding.challenge.model.Stock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the stages every line of an upload goes through, one line per operation, so
+ * that the scores are lines per second and, with the gc profiler, bytes allocated per line.
+ * The lines are generated by {@link StockRowGenerator} up front and cycled through, the clean
+ * mix having no dirty line and the dirty one 10% of them.
+ * <p>
+ * The ten million lines mix needs a few gigabytes of heap, e.g.
+ * <code>-Djmh.args="-prof gc -p rows=10000000 -jvmArgsAppend -Xmx8g"</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IngestBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"0", "0.1"})
+    private double errorRate;
+
+    private Tuple2<Long, String>[] lines;
+    private LineResult[] mappedLines;
+    private LineResult[] insertedLines;
+    private int index;
+
+    private final StockCsvParser parser = new StockCsvParser();
+    private FileHelper fileHelper;
+    private UploadResultAccumulator accumulator;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void generate() {
+        fileHelper = new FileHelper(null, null, null, null, new SimpleMeterRegistry());
+        fileHelper.initMetrics();
+
+        final StockRowGenerator generator = new StockRowGenerator(42, errorRate);
+        lines = new Tuple2[rows];
+        mappedLines = new LineResult[rows];
+        insertedLines = new LineResult[rows];
+        for (int i = 0; i < rows; i++) {
+            lines[i] = Tuples.of(i + 1L, generator.next());
+            mappedLines[i] = fileHelper.mapStock(parser, lines[i]);
+            final LineResult validatedLine = fileHelper.validateStock(mappedLines[i]);
+            insertedLines[i] = new LineResult(validatedLine.getLineNumber(), validatedLine.getStock(),
+                    validatedLine.getValidationErrors(), validatedLine.isInsertable(), null);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        accumulator = new UploadResultAccumulator(null, 100, new ErrorSink() {
+            @Override
+            public void write(final Long lineNumber, final ValidationError validationError) {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    @Benchmark
+    public StockCsvParser parse() {
+        return parser.parse(lines[next()].getT2());
+    }
+
+    @Benchmark
+    public Stock toStock() {
+        return StockMapper.toStock(parser.parse(lines[next()].getT2()));
+    }
+
+    @Benchmark
+    public LineResult mapStock() {
+        return fileHelper.mapStock(parser, lines[next()]);
+    }
+
+    @Benchmark
+    public LineResult validateStock() {
+        return fileHelper.validateStock(mappedLines[next()]);
+    }
+
+    @Benchmark
+    public UploadResultAccumulator accumulate() {
+        return accumulator.accumulate(insertedLines[next()]);
+    }
+
+    private int next() {
+        if (index == rows) {
+            index = 0;
+        }
+        return index++;
+    }
+}
@@ -0,0 +1,218 @@
+package com.coding.challenge.load;
+
+import com.coding.challenge.StockApplication;
+import com.coding.challenge.utility.StockRowGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class measures the throughput of the ingest end to end: It starts an embedded Postgres
+ * and the application in the same JVM, generates csv files shaped like
+ * <code>dow_jones_index.csv</code>, and has concurrent clients upload them and follow their
+ * progress, as the real clients do, before reporting:
+ * <ul>
+ * <li>the rows ingested per second over the whole run,</li>
+ * <li>the time from each upload to the first progress reporting ingested rows,</li>
+ * <li>the percentiles of the time from each upload to its completion,</li>
+ * <li>the peak heap of the JVM, sampled every 100 milliseconds.</li>
+ * </ul>
+ * Everything runs locally, the Postgres binaries coming from a Maven artifact. The options
+ * are <code>--rows</code> per file, <code>--errorRate</code> of the dirty rows,
+ * <code>--clients</code>, <code>--uploads</code> per client and <code>--body</code>, either
+ * <code>multipart</code> or <code>csv</code>, the other options being passed to the
+ * application, e.g. <code>--application.ingest.mode=parallel</code>.
+ */
+@Slf4j
+public class StockLoadHarness {
+
+    private static final String USERNAME = "username";
+    private static final String PASSWORD = "password";
+
+    private final int rows;
+    private final double errorRate;
+    private final int clients;
+    private final int uploads;
+    private final boolean multipart;
+
+    private StockLoadHarness(final Map<String, String> options) {
+        this.rows = Integer.parseInt(options.getOrDefault("rows", "100000"));
+        this.errorRate = Double.parseDouble(options.getOrDefault("errorRate", "0.01"));
+        this.clients = Integer.parseInt(options.getOrDefault("clients", "2"));
+        this.uploads = Integer.parseInt(options.getOrDefault("uploads", "2"));
+        this.multipart = !"csv".equals(options.getOrDefault("body", "multipart"));
+    }
+
+    public static void main(final String[] args) throws IOException {
+        System.setProperty("spring.devtools.restart.enabled", "false");    // The restart would run the harness again.
+        final Map<String, String> options = new HashMap<>();
+        final List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            final String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length == 2 && option[0].matches("rows|errorRate|clients|uploads|body")) {
+                options.put(option[0], option[1]);
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            applicationArgs.add("--spring.profiles.active=dev");
+            applicationArgs.add("--spring.r2dbc.host=localhost");
+            applicationArgs.add("--spring.r2dbc.port=" + postgres.getPort());
+            applicationArgs.add("--spring.r2dbc.name=postgres");
+            applicationArgs.add("--spring.r2dbc.username=postgres");
+            applicationArgs.add("--spring.r2dbc.password=postgres");
+            applicationArgs.add("--server.port=0");
+
+            try (ConfigurableApplicationContext context = SpringApplication.run(StockApplication.class, applicationArgs.toArray(new String[0]))) {
+                final int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                new StockLoadHarness(options).run(WebClient.builder()
+                        .baseUrl("http://localhost:" + port + "/api/v1")
+                        .defaultHeaders(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                        .build());
+            }
+        }
+    }
+
+    private void run(final WebClient client) throws IOException {
+        log.info("Generating [Files={}] of [Rows={}] with [ErrorRate={}]", clients * uploads, rows, errorRate);
+        final List<Path> files = new ArrayList<>();
+        for (int i = 0; i < clients * uploads; i++) {
+            files.add(generate(i));
+        }
+
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        final AtomicLong peakHeap = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+        final Disposable sampler = Flux.interval(Duration.ofMillis(100))
+                .subscribe(tick -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max));
+
+        final long startedAt = System.nanoTime();
+        final List<UploadTimes> times = Flux.range(0, clients)
+                .flatMap(c -> Flux.range(0, uploads).concatMap(u -> upload(client, files.get(c * uploads + u))), clients)
+                .collectList()
+                .block();
+        final long elapsedNanos = System.nanoTime() - startedAt;
+        sampler.dispose();
+        files.forEach(file -> file.toFile().delete());
+
+        report(times, elapsedNanos, peakHeap.get());
+    }
+
+    /**
+     * This method generates a file of distinct tickers, so that the rows of the uploads do not
+     * collide with each other.
+     */
+    private Path generate(final int index) throws IOException {
+        final Path file = Files.createTempFile("load-" + index + "-", ".csv");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            new StockRowGenerator(index, errorRate, "L" + index + "-").write(writer, rows);
+        }
+        return file;
+    }
+
+    private Mono<UploadTimes> upload(final WebClient client, final Path file) {
+        return Mono.defer(() -> {
+            final long startedAt = System.nanoTime();
+            final UploadTimes times = new UploadTimes();
+
+            final WebClient.RequestBodySpec request = client.post().uri("/stocks");
+            final WebClient.RequestHeadersSpec<?> body;
+            if (multipart) {
+                final MultipartBodyBuilder parts = new MultipartBodyBuilder();
+                parts.part("file", new FileSystemResource(file));
+                body = request.contentType(MediaType.MULTIPART_FORM_DATA).body(BodyInserters.fromMultipartData(parts.build()));
+            } else {
+                body = request.contentType(MediaType.parseMediaType("text/csv")).body(BodyInserters.fromResource(new FileSystemResource(file)));
+            }
+
+            return body.retrieve()
+                    .bodyToMono(String.class)
+                    .flatMapMany(requestId -> client.get()
+                            .uri("/status/{requestId}", requestId)
+                            .accept(MediaType.TEXT_EVENT_STREAM)
+                            .retrieve()
+                            .bodyToFlux(JsonNode.class))
+                    .doOnNext(progress -> {
+                        if (times.firstRowNanos == 0 && progress.path("totalRowsIngested").asLong() > 0) {
+                            times.firstRowNanos = System.nanoTime() - startedAt;
+                        }
+                        times.rowsIngested = progress.path("totalRowsIngested").asLong();
+                        times.errorRows = progress.path("totalErrorRows").asLong();
+                    })
+                    .takeUntil(progress -> "COMPLETED".equals(progress.path("state").asText()))
+                    .then(Mono.fromCallable(() -> {
+                        times.completedNanos = System.nanoTime() - startedAt;
+                        log.info("Upload completed : [File={}] [Rows={}] [Errors={}] [Millis={}]",
+                                file.getFileName(), times.rowsIngested, times.errorRows, times.completedNanos / 1_000_000);
+                        return times;
+                    }));
+        });
+    }
+
+    private void report(final List<UploadTimes> times, final long elapsedNanos, final long peakHeap) {
+        final long rowsIngested = times.stream().mapToLong(t -> t.rowsIngested).sum();
+        final long errorRows = times.stream().mapToLong(t -> t.errorRows).sum();
+        final List<Long> firstRows = new ArrayList<>();
+        final List<Long> completions = new ArrayList<>();
+        times.forEach(t -> {
+            firstRows.add(t.firstRowNanos);
+            completions.add(t.completedNanos);
+        });
+        Collections.sort(firstRows);
+        Collections.sort(completions);
+
+        log.info("Load harness report : [Clients={}] [Uploads={}] [RowsPerUpload={}] [Body={}]",
+                clients, times.size(), rows, multipart ? "multipart" : "csv");
+        log.info("  Rows ingested       : {} ({} rejected)", rowsIngested, errorRows);
+        log.info("  Elapsed             : {} ms", elapsedNanos / 1_000_000);
+        log.info("  Throughput          : {} rows/s", Math.round(rowsIngested * 1e9 / elapsedNanos));
+        log.info("  Time to first row   : p50={} ms max={} ms", millis(firstRows, 0.5), millis(firstRows, 1));
+        log.info("  End to end latency  : p50={} ms p90={} ms p99={} ms max={} ms",
+                millis(completions, 0.5), millis(completions, 0.9), millis(completions, 0.99), millis(completions, 1));
+        log.info("  Peak heap           : {} MiB", peakHeap / (1024 * 1024));
+    }
+
+    /**
+     * @return nearest-rank percentile of the specified sorted durations, in milliseconds
+     */
+    private static long millis(final List<Long> sortedNanos, final double percentile) {
+        final int rank = (int) Math.ceil(percentile * sortedNanos.size());
+        return sortedNanos.get(Math.max(rank, 1) - 1) / 1_000_000;
+    }
+
+    private static class UploadTimes {
+
+        private volatile long firstRowNanos;
+        private volatile long completedNanos;
+        private volatile long rowsIngested;
+        private volatile long errorRows;
+    }
+}
@@ -19,7 +19,8 @@ public class SecurityConfiguration {
         return http
                 .csrf().disable()
                 .authorizeExchange()
-                .pathMatchers("/api/**").authenticated()
+                .pathMatchers("/actuator/health").permitAll()
+                .pathMatchers("/api/**", "/actuator/**").authenticated()
                 .anyExchange().permitAll()
                 .and()
                 .httpBasic()
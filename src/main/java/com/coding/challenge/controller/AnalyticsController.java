@@ -0,0 +1,54 @@
+package com.coding.challenge.controller;
+
+import com.coding.challenge.dto.CorrelationMatrix;
+import com.coding.challenge.service.CorrelationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * This class acts as the endpoint of the analytics spanning all the tickers.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final CorrelationService correlationService;
+
+    /**
+     * This method returns the correlation and covariance matrices of the weekly returns of
+     * all the tickers, optionally within a window of dates.
+     *
+     * @param from first date of the window, if any
+     * @param to last date of the window, if any
+     * @return correlations and covariances of each pair of tickers
+     */
+    @Operation(summary = "Correlation matrix of the weekly returns of all the tickers.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Computed the matrix.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = CorrelationMatrix.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid window of dates.")})
+    @GetMapping(value = "/analytics/correlation", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<CorrelationMatrix> correlation(@Parameter(description = "first date (yyyy-MM-dd) of the window") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                               @Parameter(description = "last date (yyyy-MM-dd) of the window") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return correlationService.correlations(from, to);
+    }
+}
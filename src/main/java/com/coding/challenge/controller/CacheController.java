@@ -0,0 +1,44 @@
+package com.coding.challenge.controller;
+
+import com.coding.challenge.dto.TickerCacheStats;
+import com.coding.challenge.service.TickerCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+/**
+ * This class acts as the endpoint of the api calls that will enable the monitoring
+ * of the cache of the stocks by ticker.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final TickerCache tickerCache;
+
+    /**
+     * This method reports on the statistics of the cache of the stocks by ticker.
+     *
+     * @return hit, miss and eviction statistics of the cache
+     */
+    @Operation(summary = "Report on the statistics of the cache of the stocks by ticker.")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Reported the statistics.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = TickerCacheStats.class))})})
+    @GetMapping(value = "/cache/tickers", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<TickerCacheStats> tickerStats() {
+        return Mono.fromSupplier(tickerCache::stats);
+    }
+}
@@ -0,0 +1,114 @@
+package com.coding.challenge.controller;
+
+import com.coding.challenge.dto.IngestJob;
+import com.coding.challenge.service.ExportFormat;
+import com.coding.challenge.service.IngestJobScheduler;
+import com.coding.challenge.service.StockService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * This class acts as the endpoint of the api calls that will enable the follow up
+ * and cancellation of the ingest jobs of the uploaded files.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class JobController {
+
+    private final IngestJobScheduler ingestJobScheduler;
+    private final StockService stockService;
+
+    /**
+     * This method lists the ingest jobs, whether queued, running or recently finished.
+     *
+     * @return ingest jobs
+     */
+    @Operation(summary = "List the ingest jobs of the uploaded files.")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Listed the jobs successfully.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = Flux.class))})})
+    @GetMapping(value = "/jobs", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<IngestJob> findAll() {
+        return ingestJobScheduler.findAll();
+    }
+
+    /**
+     * This method reports on the ingest job of the upload request id specified.
+     *
+     * @param requestId of the upload
+     * @return ingest job
+     */
+    @Operation(summary = "Report on the ingest job of an uploaded file.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the job.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = IngestJob.class))}),
+            @ApiResponse(responseCode = "404", description = "No such job.")})
+    @GetMapping(value = "/jobs/{requestId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<IngestJob> findById(@Parameter(description = "request id of the upload") @PathVariable String requestId) {
+        return ingestJobScheduler.findById(requestId).switchIfEmpty(Mono.error(() -> notFound(requestId)));
+    }
+
+    /**
+     * This method cancels the ingest job of the upload request id specified, whether
+     * it is queued or running. The rows already ingested are kept.
+     *
+     * @param requestId of the upload
+     * @return ingest job once cancelled
+     */
+    @Operation(summary = "Cancel the ingest job of an uploaded file.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cancelled the job.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = IngestJob.class))}),
+            @ApiResponse(responseCode = "404", description = "No such job.")})
+    @DeleteMapping(value = "/jobs/{requestId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<IngestJob> cancel(@Parameter(description = "request id of the upload") @PathVariable String requestId) {
+        return Mono.fromCallable(() -> ingestJobScheduler.cancel(requestId))
+                .flatMap(Mono::justOrEmpty)
+                .switchIfEmpty(Mono.error(() -> notFound(requestId)));
+    }
+
+    /**
+     * This method downloads the lines rejected by the ingest job of the upload request id
+     * specified, as a csv file of the lines as uploaded followed by their line number and the
+     * reason of their rejection, which can be fixed and uploaded again as is.
+     *
+     * @param requestId of the upload
+     * @return content of the csv file
+     */
+    @Operation(summary = "Download the rejected lines of an uploaded file.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sent the rejected lines.",content = {@Content(mediaType = "text/csv")}),
+            @ApiResponse(responseCode = "404", description = "No such job.")})
+    @GetMapping(value = "/jobs/{requestId}/rejects")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> findRejects(@Parameter(description = "request id of the upload") @PathVariable String requestId,
+                                                              ServerHttpResponse response) {
+        return stockService.findRejects(requestId, response.bufferFactory())
+                .map(content -> ResponseEntity.ok()
+                        .contentType(ExportFormat.CSV.getMediaType())
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(requestId + "-rejects.csv").build().toString())
+                        .body(content))
+                .switchIfEmpty(Mono.error(() -> notFound(requestId)));
+    }
+
+    private static ResponseStatusException notFound(final String requestId) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("No ingest job for [RequestId=%s]", requestId));
+    }
+}
@@ -1,7 +1,13 @@
 package com.coding.challenge.controller;
 
 import com.coding.challenge.dto.Stock;
+import com.coding.challenge.dto.StockAck;
+import com.coding.challenge.dto.StockAnalytics;
+import com.coding.challenge.dto.StockQuery;
+import com.coding.challenge.dto.UploadProgress;
 import com.coding.challenge.event.UploadProgressEventProcessor;
+import com.coding.challenge.model.StockQuarter;
+import com.coding.challenge.service.ExportFormat;
 import com.coding.challenge.service.StockService;
 import com.coding.challenge.utility.StockMapper;
 import io.swagger.v3.oas.annotations.Operation;
@@ -12,13 +18,29 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
 import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
 /**
  * This class acts as the endpoint of the api calls that will enable the upload
  * of bulk data, query data using ticker and also enable addition of new records.
@@ -29,6 +51,8 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class StockController {
 
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
     private final StockService stockService;
     private final UploadProgressEventProcessor uploadProgressEventProcessor;
 
@@ -47,17 +71,176 @@ public class StockController {
     }
 
     /**
-     * This method performs stock search based on the specified ticker.
+     * This method handles the bulk upload of stocks sent as the raw csv body of the request.
+     * The lines are ingested as they arrive, so that rows get inserted while the upload is
+     * still in progress.
+     *
+     * @param content represents the csv content
+     * @return request id of the upload
+     */
+    @Operation(summary = "Bulk upload stock data streamed as csv.")
+    @ApiResponses(value = {@ApiResponse(responseCode = "202", description = "Uploaded the content for processing.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = Mono.class))})})
+    @PostMapping(value = "/stocks", consumes = {TEXT_CSV_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<String> uploadContent(@Parameter(description = "csv content to be uploaded") @RequestBody Flux<DataBuffer> content) {
+        return stockService.save(content);
+    }
+
+    /**
+     * This method upserts the stocks streamed as newline delimited json, in batches, and
+     * streams back the acknowledgement of each stock as it gets upserted or rejected.
+     *
+     * @param stocks represents the streamed stocks
+     * @return acknowledgement of each stock, in the same order
+     */
+    @Operation(summary = "Bulk upsert stocks streamed as newline delimited json.")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Streamed the acknowledgements of the stocks.",content = {@Content(mediaType = "application/x-ndjson",schema = @Schema(implementation = Flux.class))})})
+    @PostMapping(value = "/stocks/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<StockAck> upsertStream(@Parameter(description = "stocks to be upserted") @RequestBody Flux<Stock> stocks) {
+        return stockService.upsert(stocks);
+    }
+
+    /**
+     * This method exports the stocks, optionally within a window of dates and of some tickers
+     * only, as a csv file that can be uploaded back or as newline delimited json that can be
+     * streamed back. The export is streamed as the stocks are read.
+     *
+     * @param format of the export, csv or ndjson
+     * @param from first date of the stocks, if any
+     * @param to last date of the stocks, if any
+     * @param tickers of the stocks, all if none
+     * @return content of the export
+     */
+    @Operation(summary = "Export the stocks as csv or newline delimited json.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Streamed the export.",content = {@Content(mediaType = "text/csv",schema = @Schema(implementation = Flux.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid format or window of dates.")})
+    @GetMapping(value = "/stocks/export")
+    public ResponseEntity<Flux<DataBuffer>> export(@Parameter(description = "format of the export, csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+                                                   @Parameter(description = "first date (yyyy-MM-dd) of the stocks") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                   @Parameter(description = "last date (yyyy-MM-dd) of the stocks") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                   @Parameter(description = "comma separated tickers of the stocks, all if none") @RequestParam(required = false) List<String> tickers,
+                                                   ServerHttpResponse response) {
+        final ExportFormat exportFormat = ExportFormat.of(format);
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("stocks." + exportFormat.getExtension()).build().toString())
+                .body(stockService.export(exportFormat, from, to, tickers, response.bufferFactory()));
+    }
+
+    /**
+     * This method exports the stocks, optionally within a window of dates and of some tickers
+     * only, as a binary columnar snapshot, which can be uploaded back or read offline with
+     * {@link com.coding.challenge.utility.StockSnapshotReader}. The snapshot is written to a
+     * temp file which is then sent with zero-copy when possible.
+     *
+     * @param from first date of the stocks, if any
+     * @param to last date of the stocks, if any
+     * @param tickers of the stocks, all if none
+     * @return completion of the response
+     */
+    @Operation(summary = "Export the stocks as a binary columnar snapshot.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sent the snapshot.",content = {@Content(mediaType = "application/octet-stream")}),
+            @ApiResponse(responseCode = "400", description = "Invalid window of dates.")})
+    @GetMapping(value = "/stocks/snapshot")
+    public Mono<Void> exportSnapshot(@Parameter(description = "first date (yyyy-MM-dd) of the stocks") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                     @Parameter(description = "last date (yyyy-MM-dd) of the stocks") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                     @Parameter(description = "comma separated tickers of the stocks, all if none") @RequestParam(required = false) List<String> tickers,
+                                     ServerHttpResponse response) {
+        return stockService.exportSnapshot(from, to, tickers).flatMap(file -> {
+            final long size = file.toFile().length();
+            response.getHeaders().setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            response.getHeaders().setContentLength(size);
+            response.getHeaders().setContentDisposition(ContentDisposition.attachment().filename("stocks.stks").build());
+            final Mono<Void> written = response instanceof ZeroCopyHttpOutputMessage
+                    ? ((ZeroCopyHttpOutputMessage) response).writeWith(file, 0, size)
+                    : response.writeWith(DataBufferUtils.read(file, response.bufferFactory(), 65536));
+            return written.doFinally(s -> deleteSnapshot(file));
+        });
+    }
+
+    /**
+     * This method handles the upload of a binary columnar snapshot, as exported, whose stocks
+     * are ingested like the lines of a csv file but without any parsing.
+     *
+     * @param content represents the snapshot
+     * @return request id of the upload
+     */
+    @Operation(summary = "Bulk upload a binary columnar snapshot of stocks.")
+    @ApiResponses(value = {@ApiResponse(responseCode = "202", description = "Uploaded the snapshot for processing.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = Mono.class))})})
+    @PostMapping(value = "/stocks/snapshot", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<String> uploadSnapshot(@Parameter(description = "snapshot to be uploaded") @RequestBody Flux<DataBuffer> content) {
+        return stockService.saveSnapshot(content);
+    }
+
+    /**
+     * This method performs stock search based on the specified ticker, optionally within a
+     * window of dates, one page at a time and only returning some fields. The stocks are then
+     * ordered by date, the date of the last stock of a page being the cursor of the next page.
      *
      * @param ticker to use for the search
+     * @param from first date of the window, if any
+     * @param to last date of the window, if any
+     * @param after date of the last stock of the previous page, if any
+     * @param size of the page, if any
+     * @param fields to be returned, all if none
      * @return stocks matching specified ticker
      */
     @Operation(summary = "Search for a given stock using ticker value.")
-    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Search ran successfully.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = Flux.class))})})
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Search ran successfully.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = Flux.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid field or page size.")})
     @GetMapping(value = "/stock/{ticker}", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.OK)
-    public Flux<com.coding.challenge.model.Stock> findByTicker(@Parameter(description = "ticker to use for search") @PathVariable String ticker) {
-        return stockService.findByTicker(ticker);
+    public Publisher<?> findByTicker(@Parameter(description = "ticker to use for search") @PathVariable String ticker,
+                                     @Parameter(description = "first date (yyyy-MM-dd) of the search") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                     @Parameter(description = "last date (yyyy-MM-dd) of the search") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                     @Parameter(description = "date (yyyy-MM-dd) of the last stock of the previous page") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate after,
+                                     @Parameter(description = "number of stocks per page") @RequestParam(required = false) Integer size,
+                                     @Parameter(description = "comma separated fields to be returned") @RequestParam(required = false) List<String> fields) {
+        return stockService.findByTicker(new StockQuery(ticker, from, to, after, size, fields));
+    }
+
+    /**
+     * This method streams the specified metrics of a ticker as of each of its stocks, ordered
+     * by date, optionally within a window of dates.
+     *
+     * @param ticker of the stocks
+     * @param metrics to be computed, i.e. sma&lt;n&gt;, ema&lt;n&gt;, vwap or vol[&lt;n&gt;]
+     * @param from first date of the stocks, if any
+     * @param to last date of the stocks, if any
+     * @return metrics as of each stock
+     */
+    @Operation(summary = "Stream technical analytics of a given stock using ticker value.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Streamed the analytics.",content = {@Content(mediaType = "application/x-ndjson",schema = @Schema(implementation = Flux.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid metric.")})
+    @GetMapping(value = "/stock/{ticker}/analytics", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<StockAnalytics> analytics(@Parameter(description = "ticker of the stocks") @PathVariable String ticker,
+                                          @Parameter(description = "comma separated metrics, e.g. sma20,ema12,vwap,vol") @RequestParam List<String> metrics,
+                                          @Parameter(description = "first date (yyyy-MM-dd) of the stocks") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                          @Parameter(description = "last date (yyyy-MM-dd) of the stocks") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return stockService.analytics(ticker, from, to, metrics);
+    }
+
+    /**
+     * This method returns the quarterly summaries of a ticker: the first open, the last close,
+     * the highest high, the lowest low, the total volume and the average percent change of the
+     * price of each quarter.
+     *
+     * @param ticker of the stocks
+     * @return summary of each quarter, ordered by date
+     */
+    @Operation(summary = "Quarterly summaries of a given stock using ticker value.")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Search ran successfully.",content = {@Content(mediaType = "application/json",schema = @Schema(implementation = Flux.class))})})
+    @GetMapping(value = "/stock/{ticker}/quarters", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<StockQuarter> findQuarters(@Parameter(description = "ticker to use for search") @PathVariable String ticker) {
+        return stockService.findQuarters(ticker);
     }
 
     /**
@@ -81,7 +264,16 @@ public class StockController {
      */
     @Operation(summary = "Report on the status of the file upload.", hidden = true)
     @GetMapping(path = "/status/{requestId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> getUploadStatus(@PathVariable String requestId) {
-        return uploadProgressEventProcessor.start(requestId);
+    public Flux<UploadProgress> getUploadStatus(@PathVariable String requestId) {
+        return uploadProgressEventProcessor.start(requestId)
+                .orElseGet(() -> Flux.error(new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("No upload for [RequestId=%s]", requestId))));
+    }
+
+    private static void deleteSnapshot(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn(String.format("Could not delete [File=%s]", file), e);
+        }
     }
 }
@@ -0,0 +1,25 @@
+package com.coding.challenge.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Correlations and covariances of the weekly returns of each pair of tickers within a window
+ * of dates, indexed as the tickers. A pair having less than two weeks in common has no value.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class CorrelationMatrix {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final List<String> tickers;
+    private final int weeks;
+    private final Double[][] correlations;
+    private final Double[][] covariances;
+}
@@ -0,0 +1,34 @@
+package com.coding.challenge.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of an ingest job, i.e. of the processing of an uploaded file.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class IngestJob {
+
+    /**
+     * States of a job, a job being <code>INTERRUPTED</code> when cancelled by the shutdown of
+     * the application, to be resumed once it restarts.
+     */
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED, INTERRUPTED }
+
+    private final String requestId;
+    private final String fileName;
+    private final State state;
+    private final Instant submittedAt;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final UploadResult.Status status;
+    private final long totalRowsRead;
+    private final long totalRowsIngested;
+    private final long totalErrorRows;
+    private final String error;
+}
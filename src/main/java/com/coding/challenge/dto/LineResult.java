@@ -13,6 +13,8 @@ public class LineResult {
     private final List<ValidationError> validationErrors;
     private final Boolean insertSucceed;
     private final Throwable exception;
+    @ToString.Exclude
+    private final String line;
 
     public LineResult(final Long lineNumber, final Stock stock) {
         this(lineNumber, stock, null, null, null);
@@ -27,11 +29,20 @@ public class LineResult {
     }
 
     public LineResult(final Long lineNumber, final Stock stock, final List<ValidationError> validationErrors, final Boolean insertSucceed, final Throwable exception) {
+        this(lineNumber, stock, validationErrors, insertSucceed, exception, null);
+    }
+
+    /**
+     * @param line raw text the stock was read from, if at hand, so that it can be written
+     *             back as is should the line be rejected
+     */
+    public LineResult(final Long lineNumber, final Stock stock, final List<ValidationError> validationErrors, final Boolean insertSucceed, final Throwable exception, final String line) {
         this.lineNumber = lineNumber;
         this.stock = stock;
         this.validationErrors = validationErrors;
         this.insertSucceed = insertSucceed;
         this.exception = exception;
+        this.line = line;
     }
 
     public Long getLineNumber() {
@@ -50,6 +61,10 @@ public class LineResult {
         return exception;
     }
 
+    public String getLine() {
+        return line;
+    }
+
     public List<ValidationError> getValidationErrors() {
         return validationErrors;
     }
@@ -57,4 +72,12 @@ public class LineResult {
     public boolean hasValidationError() {
         return this.validationErrors != null && !this.validationErrors.isEmpty();
     }
+
+    public boolean isRejected() {
+        return hasValidationError() || this.exception != null;
+    }
+
+    public boolean isInsertable() {
+        return this.exception == null && !hasValidationError();
+    }
 }
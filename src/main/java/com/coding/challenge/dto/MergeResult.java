@@ -0,0 +1,28 @@
+package com.coding.challenge.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.Set;
+
+/**
+ * Outcome of the merge of the staged stocks of an upload, i.e. how many of them were
+ * inserted, updated or left unchanged, and the tickers of the inserted or updated ones.
+ * <p>
+ * The unchanged stocks are the ones identical to the existing ones plus the lines
+ * superseded by a later line of the same (ticker, date), while the conflicted ones are the
+ * new stocks skipped as inserted meanwhile by a concurrent transaction.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class MergeResult {
+
+    private final long inserted;
+    private final long updated;
+    private final long unchanged;
+    private final long conflicted;
+    @ToString.Exclude
+    private final Set<String> changedTickers;
+}
@@ -0,0 +1,56 @@
+package com.coding.challenge.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Acknowledgement of a stock received on the stream of stocks, reporting on whether
+ * it was inserted, updated or rejected.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class StockAck {
+
+    public enum Status { INSERTED, UPDATED, INVALID, FAILED }
+
+    private final long index;
+    private final Status status;
+    private final Long id;
+    private final String ticker;
+    private final LocalDate stockDate;
+    private final List<ValidationError> validationErrors;
+    private final String message;
+
+    public static StockAck of(final long index, final UpsertResult upsertResult) {
+        return new StockAck(
+                index,
+                upsertResult.isInserted() ? Status.INSERTED : Status.UPDATED,
+                upsertResult.getStock().getId(),
+                upsertResult.getStock().getTicker(),
+                upsertResult.getStock().getStockDate(),
+                null,
+                null
+        );
+    }
+
+    public static StockAck of(final LineResult lineResult, final Status status, final Throwable exception) {
+        return new StockAck(
+                lineResult.getLineNumber(),
+                status,
+                null,
+                lineResult.getStock() == null ? null : lineResult.getStock().getTicker(),
+                lineResult.getStock() == null ? null : lineResult.getStock().getStockDate(),
+                lineResult.hasValidationError() ? lineResult.getValidationErrors() : null,
+                exception == null ? null : exception.getMessage()
+        );
+    }
+
+    public static StockAck invalid(final LineResult lineResult) {
+        return of(lineResult, Status.INVALID, lineResult.getException());
+    }
+}
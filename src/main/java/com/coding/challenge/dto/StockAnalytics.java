@@ -0,0 +1,24 @@
+package com.coding.challenge.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Values of the requested metrics as of a stock of a ticker, a metric being null until
+ * enough stocks were seen to compute it.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class StockAnalytics {
+
+    private final LocalDate stockDate;
+    private final BigDecimal close;
+    private final Long volume;
+    private final Map<String, Double> metrics;
+}
@@ -0,0 +1,37 @@
+package com.coding.challenge.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Criteria of a search of the stocks of a ticker: An optional window of dates, a page of the
+ * given size following the <code>after</code> date, i.e. the date of the last stock of the
+ * previous page, and the fields to be returned.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class StockQuery {
+
+    private final String ticker;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final LocalDate after;
+    private final Integer size;
+    private final List<String> fields;
+
+    /**
+     * @return true if no criteria other than the ticker is specified
+     */
+    public boolean isTickerOnly() {
+        return from == null && to == null && after == null && size == null && !hasFields();
+    }
+
+    public boolean hasFields() {
+        return fields != null && !fields.isEmpty();
+    }
+}
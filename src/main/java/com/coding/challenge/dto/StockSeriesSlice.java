@@ -0,0 +1,164 @@
+package com.coding.challenge.dto;
+
+import com.coding.challenge.model.StockSeries;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Range of the stocks of a {@link StockSeries}, serialized as the json array of the stocks
+ * straight from the arrays of the series, i.e. the same json as a list of
+ * {@link com.coding.challenge.model.Stock} without creating them.
+ */
+@Getter
+@RequiredArgsConstructor
+@JsonSerialize(using = StockSeriesSlice.Serializer.class)
+public class StockSeriesSlice {
+
+    public static final String STOCK_DATE = "stockDate";
+
+    public static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "id",
+            "quarter",
+            "ticker",
+            STOCK_DATE,
+            "open",
+            "high",
+            "low",
+            "close",
+            "volume",
+            "percentChangePrice",
+            "percentChangeVolumeOverLastWeek",
+            "previousWeeksVolume",
+            "nextWeeksOpen",
+            "nextWeeksClose",
+            "percentChangeNextWeeksPrice",
+            "daysToNextDividend",
+            "percentReturnNextDividend"
+    ));
+
+    private final StockSeries series;
+    private final int start;
+    private final int end;
+
+    /**
+     * Fields to be serialized, all of them along with the flags of the entity if null.
+     */
+    private final List<String> fields;
+
+    static class Serializer extends StdSerializer<StockSeriesSlice> {
+
+        Serializer() {
+            super(StockSeriesSlice.class);
+        }
+
+        @Override
+        public void serialize(final StockSeriesSlice slice, final JsonGenerator generator, final SerializerProvider provider) throws IOException {
+            final List<String> fields = slice.fields == null ? FIELDS : slice.fields;
+            generator.writeStartArray();
+            for (int i = slice.start; i < slice.end; i++) {
+                generator.writeStartObject();
+                for (String field : fields) {
+                    generator.writeFieldName(field);
+                    writeField(slice.series, i, field, generator);
+                }
+                if (slice.fields == null) {
+                    generator.writeBooleanField("newStock", false);
+                    generator.writeBooleanField("new", false);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+
+        private static void writeField(final StockSeries series, final int i, final String field, final JsonGenerator generator) throws IOException {
+            switch (field) {
+                case "id":
+                    generator.writeNumber(series.getIds()[i]);
+                    break;
+                case "quarter":
+                    generator.writeNumber(series.getQuarters()[i]);
+                    break;
+                case "ticker":
+                    generator.writeString(series.getTicker());
+                    break;
+                case STOCK_DATE:
+                    generator.writeString(series.getStockDate(i).toString());
+                    break;
+                case "open":
+                    writePrice(series.getOpens()[i], generator);
+                    break;
+                case "high":
+                    writePrice(series.getHighs()[i], generator);
+                    break;
+                case "low":
+                    writePrice(series.getLows()[i], generator);
+                    break;
+                case "close":
+                    writePrice(series.getCloses()[i], generator);
+                    break;
+                case "volume":
+                    writeLong(series.getVolumes()[i], generator);
+                    break;
+                case "percentChangePrice":
+                    writeDouble(series.getPercentChangePrices()[i], generator);
+                    break;
+                case "percentChangeVolumeOverLastWeek":
+                    writeDouble(series.getPercentChangeVolumesOverLastWeek()[i], generator);
+                    break;
+                case "previousWeeksVolume":
+                    writeLong(series.getPreviousWeeksVolumes()[i], generator);
+                    break;
+                case "nextWeeksOpen":
+                    writePrice(series.getNextWeeksOpens()[i], generator);
+                    break;
+                case "nextWeeksClose":
+                    writePrice(series.getNextWeeksCloses()[i], generator);
+                    break;
+                case "percentChangeNextWeeksPrice":
+                    writeDouble(series.getPercentChangeNextWeeksPrices()[i], generator);
+                    break;
+                case "daysToNextDividend":
+                    generator.writeNumber(series.getDaysToNextDividends()[i]);
+                    break;
+                case "percentReturnNextDividend":
+                    writeDouble(series.getPercentReturnNextDividends()[i], generator);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown field [%s]", field));
+            }
+        }
+
+        private static void writePrice(final long cents, final JsonGenerator generator) throws IOException {
+            if (cents == StockSeries.NULL_LONG) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(StockSeries.toPrice(cents));
+            }
+        }
+
+        private static void writeLong(final long value, final JsonGenerator generator) throws IOException {
+            if (value == StockSeries.NULL_LONG) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(value);
+            }
+        }
+
+        private static void writeDouble(final double value, final JsonGenerator generator) throws IOException {
+            if (Double.isNaN(value)) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.coding.challenge.dto;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Snapshot of the statistics of the cache of the stocks by ticker.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class TickerCacheStats {
+
+    private final long size;
+    private final long hitCount;
+    private final long missCount;
+    private final double hitRate;
+    private final long loadFailureCount;
+    private final double averageLoadPenaltyMillis;
+    private final long evictionCount;
+    private final long evictionWeight;
+
+    public static TickerCacheStats of(final long size, final CacheStats stats) {
+        return new TickerCacheStats(
+                size,
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.loadFailureCount(),
+                stats.averageLoadPenalty() / 1_000_000d,
+                stats.evictionCount(),
+                stats.evictionWeight()
+        );
+    }
+}
@@ -0,0 +1,50 @@
+package com.coding.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Snapshot of the progress of an upload, as reported to the clients following it. An upload
+ * ends up <code>COMPLETED</code>, <code>FAILED</code>, or <code>INTERRUPTED</code> when it was
+ * cancelled or stopped by the shutdown of the application.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class UploadProgress {
+
+    public enum State { STARTED, IN_PROGRESS, COMPLETED, FAILED, INTERRUPTED }
+
+    private final String requestId;
+    private final State state;
+    private final UploadResult.Status status;
+    private final long totalRowsRead;
+    private final long totalRowsIngested;
+    private final long totalErrorRows;
+
+    public static UploadProgress of(final String requestId, final State state, final UploadResultAccumulator accumulator) {
+        return of(requestId, state, accumulator.getStatus(), accumulator);
+    }
+
+    public static UploadProgress of(final String requestId, final State state, final UploadResult.Status status,
+                                    final UploadResultAccumulator accumulator) {
+        return new UploadProgress(
+                requestId,
+                state,
+                status,
+                accumulator.getTotalRowsRead(),
+                accumulator.getTotalRowsIngested(),
+                accumulator.getTotalErrorRows()
+        );
+    }
+
+    /**
+     * @return whether the upload is over, whatever its outcome
+     */
+    @JsonIgnore
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED || state == State.INTERRUPTED;
+    }
+}
@@ -5,7 +5,6 @@ import lombok.ToString;
 
 import java.io.File;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 @Getter
@@ -20,40 +19,34 @@ public class UploadResult {
     private final long totalRowsIngested;
     private final long totalErrorRows;
 
+    /**
+     * Breakdown of the rows ingested, all of them being inserted but by a merge.
+     */
+    private final long insertedRows;
+    private final long updatedRows;
+    private final long unchangedRows;
+    private final long conflictedRows;
+
     private final Throwable exception;
     private final List<ValidationError> validationErrors;
 
     public UploadResult(final File file) {
-        this(file, Status.OK, 0, 0, 0, null, Collections.emptyList());
+        this(file, Status.OK, 0, 0, 0, 0, 0, 0, 0, null, Collections.emptyList());
     }
 
-    public UploadResult(final File file, final Status status, final long totalRowsRead, final long totalRowsIngested, final long totalErrorRows, final Throwable exception, final List<ValidationError> validationErrors) {
+    public UploadResult(final File file, final Status status, final long totalRowsRead, final long totalRowsIngested, final long totalErrorRows,
+                        final long insertedRows, final long updatedRows, final long unchangedRows, final long conflictedRows,
+                        final Throwable exception, final List<ValidationError> validationErrors) {
         this.file = file;
         this.status = status;
         this.totalRowsRead = totalRowsRead;
         this.totalRowsIngested = totalRowsIngested;
         this.totalErrorRows = totalErrorRows;
+        this.insertedRows = insertedRows;
+        this.updatedRows = updatedRows;
+        this.unchangedRows = unchangedRows;
+        this.conflictedRows = conflictedRows;
         this.exception = exception;
         this.validationErrors = validationErrors;
     }
-
-    public UploadResult accumulate(final List<ValidationError> validationErrors, final boolean isIngested, final Throwable exception) {
-        final boolean isError = (validationErrors != null && !validationErrors.isEmpty()) || exception != null;
-        final Status status = this.status == Status.ERROR || isError
-                ? Status.ERROR
-                : Status.OK;
-        final List<ValidationError> newValidationErrors = new LinkedList<>(this.validationErrors);
-        if (validationErrors != null && !validationErrors.isEmpty()) {
-            newValidationErrors.addAll(validationErrors);
-        }
-        return new UploadResult(
-                this.file,
-                status,
-                this.totalRowsRead + 1,
-                isIngested ? this.totalRowsIngested + 1 : this.totalRowsIngested,
-                isError ? this.totalErrorRows + 1 : this.totalErrorRows,
-                this.exception == null ? exception : this.exception,
-                newValidationErrors
-        );
-    }
 }
@@ -0,0 +1,121 @@
+package com.coding.challenge.dto;
+
+import com.coding.challenge.utility.ErrorSink;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class accumulates the {@link LineResult}s of an upload into counters, in constant memory:
+ * only the first validation errors are kept, the following ones are written to an {@link ErrorSink}.
+ * It is mutable and meant to be used by a single thread at a time, e.g. within a <code>reduce</code>.
+ */
+@Getter
+@ToString
+public class UploadResultAccumulator {
+
+    private final File file;
+    @ToString.Exclude
+    private final int maxValidationErrors;
+    @ToString.Exclude
+    private final ErrorSink errorSink;
+
+    private UploadResult.Status status = UploadResult.Status.OK;
+    private long totalRowsRead;
+    private long totalRowsIngested;
+    private long totalErrorRows;
+    private long totalValidationErrors;
+
+    @ToString.Exclude
+    private MergeResult mergeResult;
+
+    private Throwable exception;
+    @ToString.Exclude
+    private final List<ValidationError> validationErrors = new ArrayList<>();
+
+    public UploadResultAccumulator(final File file, final int maxValidationErrors, final ErrorSink errorSink) {
+        this.file = file;
+        this.maxValidationErrors = maxValidationErrors;
+        this.errorSink = errorSink;
+    }
+
+    public UploadResultAccumulator accumulate(final LineResult lineResult) {
+        final boolean isError = lineResult.isRejected();
+
+        totalRowsRead++;
+        if (lineResult.isInsertSucceed() != null && lineResult.isInsertSucceed()) {
+            totalRowsIngested++;
+        }
+        if (isError) {
+            totalErrorRows++;
+            status = UploadResult.Status.ERROR;
+        }
+        if (exception == null) {
+            exception = lineResult.getException();
+        }
+        if (lineResult.hasValidationError()) {
+            for (ValidationError validationError : lineResult.getValidationErrors()) {
+                if (totalValidationErrors++ < maxValidationErrors) {
+                    validationErrors.add(validationError);
+                } else {
+                    errorSink.write(lineResult.getLineNumber(), validationError);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Restores the counters of the lines accumulated before an ingest was interrupted, the
+     * validation errors kept being the first ones of the lines accumulated since.
+     *
+     * @param rowsRead before the interruption
+     * @param rowsIngested before the interruption
+     * @param errorRows before the interruption
+     * @return this accumulator
+     */
+    public UploadResultAccumulator resumed(final long rowsRead, final long rowsIngested, final long errorRows) {
+        totalRowsRead = rowsRead;
+        totalRowsIngested = rowsIngested;
+        totalErrorRows = errorRows;
+        if (errorRows > 0) {
+            status = UploadResult.Status.ERROR;
+        }
+        return this;
+    }
+
+    /**
+     * Records the outcome of the merge of the lines ingested, which then break down into
+     * inserted, updated, unchanged and conflicted rows instead of inserted ones only.
+     *
+     * @param mergeResult of the staged lines
+     * @return this accumulator
+     */
+    public UploadResultAccumulator merged(final MergeResult mergeResult) {
+        this.mergeResult = mergeResult;
+        return this;
+    }
+
+    /**
+     * @return immutable result of the lines accumulated so far
+     */
+    public UploadResult toUploadResult() {
+        return new UploadResult(
+                file,
+                status,
+                totalRowsRead,
+                totalRowsIngested,
+                totalErrorRows,
+                mergeResult == null ? totalRowsIngested : mergeResult.getInserted(),
+                mergeResult == null ? 0 : mergeResult.getUpdated(),
+                mergeResult == null ? 0 : mergeResult.getUnchanged(),
+                mergeResult == null ? 0 : mergeResult.getConflicted(),
+                exception,
+                Collections.unmodifiableList(new ArrayList<>(validationErrors))
+        );
+    }
+}
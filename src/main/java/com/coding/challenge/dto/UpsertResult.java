@@ -0,0 +1,19 @@
+package com.coding.challenge.dto;
+
+import com.coding.challenge.model.Stock;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Outcome of the upsert of a stock, i.e. the stock as stored and whether it was
+ * inserted or updated.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class UpsertResult {
+
+    private final Stock stock;
+    private final boolean inserted;
+}
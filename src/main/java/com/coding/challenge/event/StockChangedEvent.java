@@ -0,0 +1,29 @@
+package com.coding.challenge.event;
+
+import com.coding.challenge.model.Stock;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Custom application event to inform that stocks of the specified
+ * tickers were inserted or updated.
+ */
+public class StockChangedEvent extends ApplicationEvent {
+
+    public StockChangedEvent(Set<String> tickers) {
+        super(tickers);
+    }
+
+    public static StockChangedEvent of(Collection<Stock> stocks) {
+        return new StockChangedEvent(stocks.stream().map(Stock::getTicker).filter(Objects::nonNull).collect(Collectors.toSet()));
+    }
+
+    @SuppressWarnings("unchecked")
+    public Set<String> getTickers() {
+        return (Set<String>) getSource();
+    }
+}
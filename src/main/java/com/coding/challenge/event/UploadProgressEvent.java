@@ -1,5 +1,6 @@
 package  com.coding.challenge.event;
 
+import com.coding.challenge.dto.UploadProgress;
 import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
@@ -13,9 +14,13 @@ public class UploadProgressEvent extends ApplicationEvent {
     private final Boolean complete;
     private final String requestId;
 
-    public UploadProgressEvent(String requestId, Boolean complete, String message) {
-        super(message);
-        this.requestId = requestId;
-        this.complete = complete;
+    public UploadProgressEvent(UploadProgress progress) {
+        super(progress);
+        this.requestId = progress.getRequestId();
+        this.complete = progress.isFinished();
     }
-}
\ No newline at end of file
+
+    public UploadProgress getProgress() {
+        return (UploadProgress) getSource();
+    }
+}
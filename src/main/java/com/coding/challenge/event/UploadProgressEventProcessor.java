@@ -1,40 +1,121 @@
 package com.coding.challenge.event;
 
+import com.coding.challenge.dto.UploadProgress;
+import com.coding.challenge.service.IngestJobScheduler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Sinks;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * This class keeps one sink per upload into which the progress events are emitted without blocking.
+ * Each sink replays the latest progress, so that a client subscribing late, even after the upload
+ * completed, gets the current state. Sinks are dropped once they have not been updated for a while.
+ * Only the uploads with an ingest job or a sink get one, so that unknown ids do not create sinks.
+ * As jobs are kept longer than sinks, the sink of a job created once its former sink was dropped
+ * replays the last progress of the job, and is completed straight away if the job finished.
+ */
 @Slf4j
 @Component
-public class UploadProgressEventProcessor implements ApplicationListener<UploadProgressEvent> {
+@RequiredArgsConstructor
+public class UploadProgressEventProcessor implements ApplicationListener<UploadProgressEvent>, MeterBinder {
 
-    private final Map<String, FluxSink<String>> sinks = new ConcurrentHashMap<>();
+    private static final Sinks.EmitFailureHandler RETRY_NON_SERIALIZED =
+            (signalType, emitResult) -> emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED;
 
-    public Flux<String> start(String id) {
-        return Flux.create((FluxSink<String> fluxSink) -> sinks.put(id, fluxSink)).share();
+    private final IngestJobScheduler ingestJobScheduler;
+    private final Map<String, ProgressSink> sinks = new ConcurrentHashMap<>();
+
+    @Value("${application.progress.ttlMillis}")
+    private long ttlMillis;
+
+    private Disposable expiry;
+
+    @PostConstruct
+    public void startExpiry() {
+        expiry = Flux.interval(Duration.ofMillis(Math.max(ttlMillis / 2, 1)))
+                .subscribe(tick -> expire());
+    }
+
+    @PreDestroy
+    public void stopExpiry() {
+        expiry.dispose();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("stock.progress.sinks", sinks, Map::size)
+                .description("Progress sinks of the uploads not dropped yet")
+                .register(registry);
+    }
+
+    /**
+     * @param id request id of the upload
+     * @return progress of the upload, or empty if neither its job nor its progress is known
+     */
+    public Optional<Flux<UploadProgress>> start(String id) {
+        if (!sinks.containsKey(id) && !ingestJobScheduler.isKnown(id)) {
+            return Optional.empty();
+        }
+        return Optional.of(sinks.computeIfAbsent(id, k -> seeded(ingestJobScheduler.findProgress(k))).sink.asFlux());
     }
 
     @Override
     public void onApplicationEvent(UploadProgressEvent uploadProgressEvent) {
-        publish(uploadProgressEvent.getRequestId(), uploadProgressEvent.getSource().toString());
+        final ProgressSink progressSink = sink(uploadProgressEvent.getRequestId());
+        progressSink.touch();
+        progressSink.sink.emitNext(uploadProgressEvent.getProgress(), RETRY_NON_SERIALIZED);
         if (uploadProgressEvent.getComplete()) {
-            if (sinks.containsKey(uploadProgressEvent.getRequestId())) {
-                sinks.get(uploadProgressEvent.getRequestId()).complete();
-                sinks.remove(uploadProgressEvent.getRequestId());
-            }
+            progressSink.sink.emitComplete(RETRY_NON_SERIALIZED);
         }
     }
 
-    private void publish(String id, String item) {
-        if (sinks.containsKey(id)) {
-            sinks.get(id).next(item);
-        } else {
-            log.debug("No subscriber to status of upload file : [RequestId={}] [Status={}]", id, item);
+    private ProgressSink sink(String id) {
+        return sinks.computeIfAbsent(id, k -> new ProgressSink());
+    }
+
+    private ProgressSink seeded(Optional<UploadProgress> progress) {
+        final ProgressSink progressSink = new ProgressSink();
+        progress.ifPresent(p -> {
+            progressSink.sink.emitNext(p, RETRY_NON_SERIALIZED);
+            if (p.isFinished()) {
+                progressSink.sink.emitComplete(RETRY_NON_SERIALIZED);
+            }
+        });
+        return progressSink;
+    }
+
+    private void expire() {
+        final long now = System.currentTimeMillis();
+        sinks.forEach((id, progressSink) -> {
+            if (now - progressSink.lastUpdated > ttlMillis && sinks.remove(id, progressSink)) {
+                log.debug("Dropping status of upload : [RequestId={}]", id);
+                progressSink.sink.emitComplete(RETRY_NON_SERIALIZED);
+            }
+        });
+    }
+
+    private static class ProgressSink {
+
+        private final Sinks.Many<UploadProgress> sink = Sinks.many().replay().latest();
+        private volatile long lastUpdated = System.currentTimeMillis();
+
+        private void touch() {
+            lastUpdated = System.currentTimeMillis();
         }
     }
 }
@@ -0,0 +1,68 @@
+package com.coding.challenge.event;
+
+import com.coding.challenge.dto.UploadProgress;
+import com.coding.challenge.dto.UploadResult;
+import com.coding.challenge.dto.UploadResultAccumulator;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class reports the progress of a single upload. Rather than one event per line, it
+ * coalesces the progress into one {@link UploadProgressEvent} every given number of rows
+ * or given interval, whichever comes first. The last report tells how the upload ended, so
+ * that an upload which failed or was interrupted is never reported as completed.
+ */
+public class UploadProgressReporter {
+
+    private final ApplicationEventPublisher publisher;
+    private final String requestId;
+    private final long rowStep;
+    private final long intervalNanos;
+
+    private long lastReportedRows;
+    private long lastReportedNanos;
+
+    public UploadProgressReporter(final ApplicationEventPublisher publisher, final String requestId, final long rowStep, final long intervalMillis) {
+        this.publisher = publisher;
+        this.requestId = requestId;
+        this.rowStep = rowStep;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    public void started(final UploadResultAccumulator accumulator) {
+        report(UploadProgress.State.STARTED, accumulator.getStatus(), accumulator);
+    }
+
+    public UploadResultAccumulator progress(final UploadResultAccumulator accumulator) {
+        if (accumulator.getTotalRowsRead() - lastReportedRows >= rowStep || System.nanoTime() - lastReportedNanos >= intervalNanos) {
+            report(UploadProgress.State.IN_PROGRESS, accumulator.getStatus(), accumulator);
+        }
+        return accumulator;
+    }
+
+    public void completed(final UploadResultAccumulator accumulator) {
+        report(UploadProgress.State.COMPLETED, accumulator.getStatus(), accumulator);
+    }
+
+    /**
+     * Reports the failure of the upload, whose lines counted so far are the ones of the
+     * batches written before it failed.
+     */
+    public void failed(final UploadResultAccumulator accumulator) {
+        report(UploadProgress.State.FAILED, UploadResult.Status.ERROR, accumulator);
+    }
+
+    /**
+     * Reports that the upload was cancelled or stopped by the shutdown of the application.
+     */
+    public void interrupted(final UploadResultAccumulator accumulator) {
+        report(UploadProgress.State.INTERRUPTED, accumulator.getStatus(), accumulator);
+    }
+
+    private void report(final UploadProgress.State state, final UploadResult.Status status, final UploadResultAccumulator accumulator) {
+        lastReportedRows = accumulator.getTotalRowsRead();
+        lastReportedNanos = System.nanoTime();
+        publisher.publishEvent(new UploadProgressEvent(UploadProgress.of(requestId, state, status, accumulator)));
+    }
+}
@@ -0,0 +1,16 @@
+package com.coding.challenge.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * This class is used to reject a search whose criteria are invalid, e.g. an unknown field,
+ * which is reported to the client as <code>400 Bad Request</code>.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidQueryException extends RuntimeException {
+
+    public InvalidQueryException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.coding.challenge.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * This class is used to reject an upload when the queue of ingest jobs is full,
+ * which is reported to the client as <code>429 Too Many Requests</code>.
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyJobsException extends RuntimeException {
+
+    public TooManyJobsException(String message) {
+        super(message);
+    }
+}
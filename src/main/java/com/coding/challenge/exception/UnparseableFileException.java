@@ -12,9 +12,15 @@ import lombok.Getter;
 public class UnparseableFileException  extends RuntimeException {
 
     private final Long lineNumber;
+    private final String line;
 
     public UnparseableFileException( Long lineNumber, Throwable throwable ) {
+        this(lineNumber, null, throwable);
+    }
+
+    public UnparseableFileException( Long lineNumber, String line, Throwable throwable ) {
         super(throwable.getMessage(), throwable);
         this.lineNumber = lineNumber;
+        this.line = line;
     }
 }
@@ -0,0 +1,44 @@
+package com.coding.challenge.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * Represents the progress of the ingest job of an uploaded file as of its last committed
+ * batch: the last line ingested, the byte offset of the file following it, and the counters
+ * of the rows so far, so that an interrupted job can resume from there. The checkpoint
+ * belongs to the instance of the application whose temp file it refers to, and which is
+ * thereby the only one able to resume it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("ingest_checkpoint")
+public class IngestCheckpoint {
+
+    @Id
+    private String requestId;
+    private String instanceId;
+    private String fileName;
+    private String filePath;
+    private String mode;
+    private long lastLine;
+    private long byteOffset;
+    private long rowsRead;
+    private long rowsIngested;
+    private long errorRows;
+    private Instant updatedAt;
+
+    /**
+     * @return checkpoint of a job which did not ingest anything yet
+     */
+    public static IngestCheckpoint of(final String requestId, final String instanceId, final String fileName, final String filePath,
+                                      final String mode) {
+        return new IngestCheckpoint(requestId, instanceId, fileName, filePath, mode, 0, 0, 0, 0, 0, Instant.now());
+    }
+}
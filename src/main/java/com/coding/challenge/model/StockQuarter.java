@@ -0,0 +1,28 @@
+package com.coding.challenge.model;
+
+import lombok.Data;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Represents the summary of the stocks of a ticker over a calendar quarter, maintained by the
+ * triggers of the stock table as the stocks get inserted, updated or deleted.
+ */
+@Data
+@Table("stock_quarter")
+public class StockQuarter {
+
+    private String ticker;
+    private LocalDate quarterStart;
+    private LocalDate firstDate;
+    private LocalDate lastDate;
+    private BigDecimal open;
+    private BigDecimal high;
+    private BigDecimal low;
+    private BigDecimal close;
+    private Long volume;
+    private Double averagePercentChangePrice;
+    private int stockCount;
+}
@@ -0,0 +1,149 @@
+package com.coding.challenge.model;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Represents the stocks of a ticker as parallel arrays of primitives ordered by date, i.e.
+ * about a hundred bytes per stock instead of the many objects of a {@link Stock}. Prices are
+ * stored as cents, dates as epoch days, and missing values as {@link #NULL_LONG} or NaN.
+ * <p>
+ * A series is immutable, a change of the stocks of the ticker leading to a new series.
+ */
+@Getter
+public class StockSeries {
+
+    public static final long NULL_LONG = Long.MIN_VALUE;
+
+    public static final int PRICE_SCALE = 2;
+
+    private final String ticker;
+    private final long version;
+    private final int size;
+
+    private final long[] ids;
+    private final byte[] quarters;
+    private final int[] epochDays;
+    private final long[] opens;
+    private final long[] highs;
+    private final long[] lows;
+    private final long[] closes;
+    private final long[] volumes;
+    private final double[] percentChangePrices;
+    private final double[] percentChangeVolumesOverLastWeek;
+    private final long[] previousWeeksVolumes;
+    private final long[] nextWeeksOpens;
+    private final long[] nextWeeksCloses;
+    private final double[] percentChangeNextWeeksPrices;
+    private final int[] daysToNextDividends;
+    private final double[] percentReturnNextDividends;
+
+    private StockSeries(final String ticker, final long version, final int size) {
+        this.ticker = ticker;
+        this.version = version;
+        this.size = size;
+        this.ids = new long[size];
+        this.quarters = new byte[size];
+        this.epochDays = new int[size];
+        this.opens = new long[size];
+        this.highs = new long[size];
+        this.lows = new long[size];
+        this.closes = new long[size];
+        this.volumes = new long[size];
+        this.percentChangePrices = new double[size];
+        this.percentChangeVolumesOverLastWeek = new double[size];
+        this.previousWeeksVolumes = new long[size];
+        this.nextWeeksOpens = new long[size];
+        this.nextWeeksCloses = new long[size];
+        this.percentChangeNextWeeksPrices = new double[size];
+        this.daysToNextDividends = new int[size];
+        this.percentReturnNextDividends = new double[size];
+    }
+
+    /**
+     * Builds the series of the specified stocks, which must all be of the same ticker and
+     * have a date, as guaranteed by the unique (ticker, stock_date) index.
+     *
+     * @param ticker of the stocks
+     * @param version of the stocks of the ticker the series was loaded at
+     * @param stocks of the ticker, in any order
+     * @return series of the stocks, ordered by date
+     */
+    public static StockSeries of(final String ticker, final long version, final Collection<Stock> stocks) {
+        final List<Stock> sorted = new ArrayList<>(stocks);
+        sorted.sort(Comparator.comparing(Stock::getStockDate));
+
+        final StockSeries series = new StockSeries(ticker, version, sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            final Stock stock = sorted.get(i);
+            series.ids[i] = stock.getId();
+            series.quarters[i] = (byte) stock.getQuarter();
+            series.epochDays[i] = (int) stock.getStockDate().toEpochDay();
+            series.opens[i] = toCents(stock.getOpen());
+            series.highs[i] = toCents(stock.getHigh());
+            series.lows[i] = toCents(stock.getLow());
+            series.closes[i] = toCents(stock.getClose());
+            series.volumes[i] = toLong(stock.getVolume());
+            series.percentChangePrices[i] = toDouble(stock.getPercentChangePrice());
+            series.percentChangeVolumesOverLastWeek[i] = toDouble(stock.getPercentChangeVolumeOverLastWeek());
+            series.previousWeeksVolumes[i] = toLong(stock.getPreviousWeeksVolume());
+            series.nextWeeksOpens[i] = toCents(stock.getNextWeeksOpen());
+            series.nextWeeksCloses[i] = toCents(stock.getNextWeeksClose());
+            series.percentChangeNextWeeksPrices[i] = toDouble(stock.getPercentChangeNextWeeksPrice());
+            series.daysToNextDividends[i] = stock.getDaysToNextDividend();
+            series.percentReturnNextDividends[i] = toDouble(stock.getPercentReturnNextDividend());
+        }
+        return series;
+    }
+
+    /**
+     * @param date to look for
+     * @return index of the first stock whose date is on or after the specified date
+     */
+    public int indexOf(final LocalDate date) {
+        final int index = Arrays.binarySearch(epochDays, 0, size, (int) date.toEpochDay());
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * @param date to look for
+     * @return index of the first stock whose date is after the specified date
+     */
+    public int indexAfter(final LocalDate date) {
+        return date.toEpochDay() >= Integer.MAX_VALUE ? size : indexOf(date.plusDays(1));
+    }
+
+    public LocalDate getStockDate(final int index) {
+        return LocalDate.ofEpochDay(epochDays[index]);
+    }
+
+    /**
+     * @return specified price as a decimal, or null if missing
+     */
+    public static BigDecimal toPrice(final long cents) {
+        return cents == NULL_LONG ? null : BigDecimal.valueOf(cents, PRICE_SCALE);
+    }
+
+    /**
+     * @return specified price as cents rounded half up, or {@link #NULL_LONG} if missing
+     */
+    public static long toCents(final BigDecimal price) {
+        return price == null ? NULL_LONG : price.setScale(PRICE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static long toLong(final Long value) {
+        return value == null ? NULL_LONG : value;
+    }
+
+    private static double toDouble(final Double value) {
+        return value == null ? Double.NaN : value;
+    }
+}
@@ -0,0 +1,36 @@
+package com.coding.challenge.repository;
+
+import com.coding.challenge.model.IngestCheckpoint;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface IngestCheckpointRepository extends Repository<IngestCheckpoint, String> {
+
+    Flux<IngestCheckpoint> findAll();
+
+    /**
+     * Finds the checkpoints of the specified instance, along with the ones recorded before the
+     * checkpoints belonged to an instance.
+     */
+    @Query("SELECT * FROM ingest_checkpoint WHERE instance_id = :instanceId OR instance_id IS NULL")
+    Flux<IngestCheckpoint> findByInstanceId(String instanceId);
+
+    Mono<Void> deleteById(String requestId);
+
+    @Modifying
+    @Query("INSERT INTO ingest_checkpoint (request_id, instance_id, file_name, file_path, mode)"
+            + " VALUES (:requestId, :instanceId, :fileName, :filePath, :mode)")
+    Mono<Integer> create(String requestId, String instanceId, String fileName, String filePath, String mode);
+
+    /**
+     * Moves the checkpoint of a job forward, meant to be called within the transaction of the
+     * batch it follows.
+     */
+    @Modifying
+    @Query("UPDATE ingest_checkpoint SET last_line = :lastLine, byte_offset = :byteOffset, rows_read = :rowsRead,"
+            + " rows_ingested = :rowsIngested, error_rows = :errorRows, updated_at = now() WHERE request_id = :requestId")
+    Mono<Integer> advance(String requestId, long lastLine, long byteOffset, long rowsRead, long rowsIngested, long errorRows);
+}
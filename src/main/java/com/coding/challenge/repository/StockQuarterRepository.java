@@ -0,0 +1,9 @@
+package com.coding.challenge.repository;
+
+import com.coding.challenge.model.StockQuarter;
+import org.springframework.data.repository.Repository;
+import reactor.core.publisher.Flux;
+
+public interface StockQuarterRepository extends Repository<StockQuarter, Void> {
+    Flux<StockQuarter> findByTickerOrderByQuarterStart(String ticker);
+}
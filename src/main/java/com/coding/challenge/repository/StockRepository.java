@@ -3,11 +3,12 @@ package com.coding.challenge.repository;
 import com.coding.challenge.model.Stock;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
-import java.time.LocalDate;
-
-public interface StockRepository extends ReactiveCrudRepository<Stock, Long> {
-    Mono<Stock> findStockByTickerAndStockDate(String ticker, LocalDate stockDate);
+/**
+ * Repository of the stocks. The stock table being partitioned by year of stock_date, the
+ * lookups by id, e.g. {@link #findById(Object)} or {@link #deleteById(Object)}, cannot be
+ * pruned and probe the id index of every partition, unlike the lookups bounded by date.
+ */
+public interface StockRepository extends ReactiveCrudRepository<Stock, Long>, StockRepositoryCustom {
     Flux<Stock> findStockByTicker(String ticker);
 }
@@ -0,0 +1,163 @@
+package com.coding.challenge.repository;
+
+import com.coding.challenge.dto.MergeResult;
+import com.coding.challenge.dto.StockQuery;
+import com.coding.challenge.dto.UpsertResult;
+import com.coding.challenge.exception.InvalidQueryException;
+import com.coding.challenge.model.Stock;
+import io.r2dbc.spi.Row;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Custom repository operations that cannot be expressed with the derived queries
+ * of {@link StockRepository}.
+ */
+public interface StockRepositoryCustom {
+
+    /**
+     * Inserts the specified stocks using a single batched statement, i.e. one round-trip
+     * for the whole list instead of one per stock.
+     * <p>
+     * Within a transaction, the quarters of the stocks are refreshed once for the whole batch
+     * rather than once per stock, the stock_quarter triggers being deferred until then.
+     *
+     * @param stocks to be inserted
+     * @return inserted stocks, in the same order, with their generated ids
+     */
+    Flux<Stock> insertAll(List<Stock> stocks);
+
+    /**
+     * Inserts the specified stock within a savepoint, so that should the insert fail, e.g.
+     * because of a duplicate (ticker, date), only the insert is rolled back and the current
+     * transaction can go on, which a failed statement would otherwise abort.
+     *
+     * @param stock to be inserted within a transaction
+     * @return inserted stock with its generated id
+     */
+    Mono<Stock> insertWithinSavepoint(Stock stock);
+
+    /**
+     * Inserts the specified stock or updates the stock of the same (ticker, date) with a
+     * single atomic statement, i.e. one round-trip and no race between concurrent upserts.
+     *
+     * @param stock to be inserted or updated
+     * @return stock as stored, and whether it was inserted or updated
+     */
+    Mono<UpsertResult> upsert(Stock stock);
+
+    /**
+     * Upserts the specified stocks using a single batched statement, i.e. one round-trip
+     * for the whole list instead of one per stock.
+     * <p>
+     * Within a transaction, the quarters of the stocks are refreshed once for the whole batch
+     * rather than once per stock, the stock_quarter triggers being deferred until then.
+     *
+     * @param stocks to be inserted or updated
+     * @return outcome of each upsert, in the same order as the stocks
+     */
+    Flux<UpsertResult> upsertAll(List<Stock> stocks);
+
+    /**
+     * Loads the specified stocks of an upload into the staging table, using a single batched
+     * statement, so that they can later be merged all at once.
+     *
+     * @param requestId of the upload
+     * @param stocks to be staged, by line number
+     * @return completion once staged
+     */
+    Mono<Void> stageAll(String requestId, Map<Long, Stock> stocks);
+
+    /**
+     * Merges the staged stocks of an upload into the stocks with a single set-based statement:
+     * The stocks of a new (ticker, date) are inserted, the existing ones only updated if any of
+     * their columns differ, and the identical ones left alone. Should several lines have the
+     * same (ticker, date), the last one wins, the others being counted as unchanged. A new
+     * stock inserted meanwhile by a concurrent transaction is skipped and counted as
+     * conflicted rather than unchanged.
+     * <p>
+     * Within a transaction, the quarters of the stocks are refreshed once, after both the
+     * inserts and the updates, the stock_quarter triggers being deferred until then.
+     *
+     * @param requestId of the upload
+     * @return counts of the merged stocks
+     */
+    Mono<MergeResult> merge(String requestId);
+
+    /**
+     * Deletes the staged stocks of an upload.
+     *
+     * @param requestId of the upload
+     * @return completion once deleted
+     */
+    Mono<Void> deleteStaged(String requestId);
+
+    /**
+     * Creates the yearly partitions of the stock table missing for the current year, the
+     * specified number of years ahead and the years of the stocks which went to the default
+     * partition, moving these stocks into their new partitions.
+     *
+     * @param yearsAhead number of years after the current one
+     * @return number of partitions created
+     */
+    Mono<Integer> createPartitions(int yearsAhead);
+
+    /**
+     * Finds the stocks of a ticker matching the specified criteria, ordered by date, using
+     * the (ticker, stock_date) index for both the window of dates and the page.
+     *
+     * @param query criteria of the search
+     * @return matching stocks
+     */
+    Flux<Stock> findByQuery(StockQuery query);
+
+    /**
+     * Finds the stocks of a ticker matching the specified criteria, ordered by date, only
+     * reading the fields of the query, plus the date of the stock which is the page cursor.
+     *
+     * @param query criteria of the search
+     * @return requested fields of the matching stocks, by field name
+     * @throws InvalidQueryException if a field is unknown
+     */
+    Flux<Map<String, Object>> findFieldsByQuery(StockQuery query);
+
+    /**
+     * Finds the stocks of every ticker within the specified window of dates, only reading
+     * their ticker, date and percent change of the price, i.e. their weekly return.
+     *
+     * @param from first date of the stocks, if any
+     * @param to last date of the stocks, if any
+     * @return stocks having a ticker, a date and a return, ordered by ticker and date
+     */
+    Flux<Stock> findReturns(LocalDate from, LocalDate to);
+
+    /**
+     * Reads the rows of the stock table through a cursor, i.e. the specified number of rows
+     * at a time, without mapping them to stocks. The columns of a row are read in the order
+     * of the columns of the uploaded csv files.
+     *
+     * @param from first date of the stocks, if any
+     * @param to last date of the stocks, if any
+     * @param tickers of the stocks, all if none
+     * @param fetchSize number of rows fetched at a time
+     * @param mapper of each row
+     * @return mapped rows, ordered by ticker and date
+     */
+    <T> Flux<T> findAllRows(LocalDate from, LocalDate to, List<String> tickers, int fetchSize, Function<Row, T> mapper);
+
+    /**
+     * Reads the stocks through a cursor, i.e. the specified number of rows at a time.
+     *
+     * @param from first date of the stocks, if any
+     * @param to last date of the stocks, if any
+     * @param tickers of the stocks, all if none
+     * @param fetchSize number of rows fetched at a time
+     * @return stocks, ordered by ticker and date
+     */
+    Flux<Stock> findAllStocks(LocalDate from, LocalDate to, List<String> tickers, int fetchSize);
+}
@@ -0,0 +1,438 @@
+package com.coding.challenge.repository;
+
+import com.coding.challenge.dto.MergeResult;
+import com.coding.challenge.dto.StockQuery;
+import com.coding.challenge.dto.UpsertResult;
+import com.coding.challenge.exception.InvalidQueryException;
+import com.coding.challenge.model.Stock;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link StockRepositoryCustom} working directly with R2DBC statements.
+ */
+@RequiredArgsConstructor
+public class StockRepositoryCustomImpl implements StockRepositoryCustom {
+
+    static final String COLUMNS = "quarter, ticker, stock_date, open, high, low, close, volume, "
+            + "percent_change_price, percent_change_volume_over_last_week, previous_weeks_volume, "
+            + "next_weeks_open, next_weeks_close, percent_change_next_weeks_price, "
+            + "days_to_next_dividend, percent_return_next_dividend";
+
+    static final String VALUES = "$1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12, $13, $14, $15, $16";
+
+    private static final String INSERT = "INSERT INTO stock (" + COLUMNS + ") VALUES (" + VALUES + ") RETURNING id";
+
+    private static final String INSERT_SAVEPOINT = "stock_insert";
+
+    /**
+     * Inserts the stock or, should its (ticker, date) already exist, updates all its other
+     * columns. The default id being drawn from the sequence even when the insert turns into
+     * an update, the row was inserted if its id is the last one drawn by the session, as
+     * <code>xmax</code> cannot be returned from a partitioned table.
+     */
+    private static final String UPSERT = "INSERT INTO stock (" + COLUMNS + ") VALUES (" + VALUES + ")"
+            + " ON CONFLICT (ticker, stock_date) DO UPDATE SET "
+            + columnsExceptKey()
+                    .map(column -> column + " = EXCLUDED." + column)
+                    .collect(Collectors.joining(", "))
+            + " RETURNING *, id = currval('stock_id_seq') AS inserted";
+
+    private static final String STAGE = "INSERT INTO stock_staging (" + COLUMNS + ", request_id, line_number)"
+            + " VALUES (" + VALUES + ", $17, $18)";
+
+    /**
+     * Merges the staged stocks of an upload, the last line of a (ticker, date) winning: All
+     * the sub-statements seeing the stocks as of the start of the statement, the existing
+     * stocks are only updated if they differ and the other ones inserted, a stock inserted
+     * meanwhile by a concurrent transaction being skipped. The staged stocks which did not
+     * exist but were not inserted are thereby the conflicting ones, and the lines superseded
+     * by a later line of the same (ticker, date) are counted as unchanged.
+     */
+    private static final String MERGE = "WITH staged AS ("
+            + "SELECT DISTINCT ON (ticker, stock_date) * FROM stock_staging WHERE request_id = $1"
+            + " ORDER BY ticker, stock_date, line_number DESC"
+            + "), matched AS ("
+            + "SELECT st.*, EXISTS (SELECT 1 FROM stock s WHERE s.ticker = st.ticker AND s.stock_date = st.stock_date) AS existing"
+            + " FROM staged st"
+            + "), updated AS ("
+            + "UPDATE stock s SET " + columnsExceptKey().map(column -> column + " = st." + column).collect(Collectors.joining(", "))
+            + " FROM matched st WHERE st.existing AND s.ticker = st.ticker AND s.stock_date = st.stock_date"
+            + " AND (" + columnsExceptKey().map(column -> "s." + column).collect(Collectors.joining(", ")) + ")"
+            + " IS DISTINCT FROM (" + columnsExceptKey().map(column -> "st." + column).collect(Collectors.joining(", ")) + ")"
+            + " RETURNING s.ticker, s.stock_date"
+            + "), inserted AS ("
+            + "INSERT INTO stock (" + COLUMNS + ") SELECT " + COLUMNS + " FROM matched st WHERE NOT st.existing"
+            + " ORDER BY ticker, stock_date"
+            + " ON CONFLICT (ticker, stock_date) DO NOTHING"
+            + " RETURNING ticker, stock_date"
+            + "), quarters AS ("
+            + "SELECT DISTINCT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start"
+            + " FROM (SELECT ticker, stock_date FROM inserted UNION ALL SELECT ticker, stock_date FROM updated) c"
+            + " WHERE ticker IS NOT NULL AND stock_date IS NOT NULL"
+            + ") SELECT (SELECT COUNT(*) FROM stock_staging WHERE request_id = $1) AS staged,"
+            + " (SELECT COUNT(*) FROM matched WHERE NOT existing) AS absent, (SELECT COUNT(*) FROM inserted) AS inserted,"
+            + " (SELECT COUNT(*) FROM updated) AS updated,"
+            + " ARRAY(SELECT ticker FROM inserted UNION SELECT ticker FROM updated) AS tickers,"
+            + " ARRAY(SELECT ticker FROM quarters ORDER BY ticker, quarter_start) AS quarter_tickers,"
+            + " ARRAY(SELECT quarter_start::TEXT FROM quarters ORDER BY ticker, quarter_start) AS quarter_starts";
+
+    /**
+     * Defers the stock_quarter triggers until the end of the transaction, if any, as they
+     * would otherwise fire once per binding of a batched statement.
+     */
+    private static final String DEFER_QUARTERS = "SELECT set_config('stock.quarters', 'deferred', true)";
+
+    /**
+     * Refreshes the specified quarters, once for a whole batch of stocks, and ends the deferral
+     * of the stock_quarter triggers.
+     */
+    private static final String REFRESH_QUARTERS = "SELECT set_config('stock.quarters', '', true), refresh_stock_quarters($1::VARCHAR[], $2::DATE[])";
+
+    private static final String STOCK_DATE = "stockDate";
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+
+    @Override
+    public Flux<Stock> insertAll(final List<Stock> stocks) {
+        if (stocks.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.inConnectionMany(connection -> {
+            final Statement statement = connection.createStatement(INSERT);
+            for (Stock stock : stocks) {
+                bind(statement, stock).add();
+            }
+            return deferQuarters(connection)
+                    .thenMany(Flux.from(statement.execute()))
+                    .concatMap(result -> result.map((row, metadata) -> ((Number) row.get("id")).longValue()))
+                    .collectList()
+                    .flatMapMany(ids -> refreshQuarters(connection, stocks).thenMany(Flux.fromIterable(ids)));
+        }).zipWithIterable(stocks, (id, stock) -> {
+            stock.setId(id);
+            return stock;
+        });
+    }
+
+    @Override
+    public Mono<Stock> insertWithinSavepoint(final Stock stock) {
+        return databaseClient.inConnection(connection -> Mono.from(connection.createSavepoint(INSERT_SAVEPOINT))
+                .then(Flux.from(bind(connection.createStatement(INSERT), stock).execute())
+                        .concatMap(result -> result.map((row, metadata) -> ((Number) row.get("id")).longValue()))
+                        .next()
+                        .onErrorResume(e -> Mono.from(connection.rollbackTransactionToSavepoint(INSERT_SAVEPOINT)).then(Mono.error(e))))
+                .flatMap(id -> Mono.from(connection.releaseSavepoint(INSERT_SAVEPOINT)).thenReturn(id)))
+                .map(id -> {
+                    stock.setId(id);
+                    return stock;
+                });
+    }
+
+    @Override
+    public Mono<UpsertResult> upsert(final Stock stock) {
+        return databaseClient.inConnection(connection -> Flux.from(bind(connection.createStatement(UPSERT), stock).execute())
+                .concatMap(this::toUpsertResult)
+                .next());
+    }
+
+    @Override
+    public Flux<UpsertResult> upsertAll(final List<Stock> stocks) {
+        if (stocks.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.inConnectionMany(connection -> {
+            final Statement statement = connection.createStatement(UPSERT);
+            for (Stock stock : stocks) {
+                bind(statement, stock).add();
+            }
+            return deferQuarters(connection)
+                    .thenMany(Flux.from(statement.execute()))
+                    .concatMap(this::toUpsertResult)
+                    .collectList()
+                    .flatMapMany(upsertResults -> refreshQuarters(connection, stocks).thenMany(Flux.fromIterable(upsertResults)));
+        });
+    }
+
+    @Override
+    public Mono<Void> stageAll(final String requestId, final Map<Long, Stock> stocks) {
+        if (stocks.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.inConnectionMany(connection -> {
+            final Statement statement = connection.createStatement(STAGE);
+            stocks.forEach((lineNumber, stock) -> bind(statement, stock)
+                    .bind(16, requestId)
+                    .bind(17, lineNumber)
+                    .add());
+            return Flux.from(statement.execute()).concatMap(Result::getRowsUpdated);
+        }).then();
+    }
+
+    @Override
+    public Mono<MergeResult> merge(final String requestId) {
+        return databaseClient.inConnection(connection -> deferQuarters(connection)
+                .thenMany(Flux.from(connection.createStatement(MERGE).bind(0, requestId).execute()))
+                .concatMap(result -> result.map((row, metadata) -> {
+                    final long staged = row.get("staged", Long.class);
+                    final long inserted = row.get("inserted", Long.class);
+                    final long updated = row.get("updated", Long.class);
+                    final long absent = row.get("absent", Long.class);
+                    return Tuples.of(
+                            new MergeResult(inserted, updated, staged - absent - updated, absent - inserted,
+                                    new HashSet<>(Arrays.asList(row.get("tickers", String[].class)))),
+                            row.get("quarter_tickers", String[].class),
+                            row.get("quarter_starts", String[].class));
+                }))
+                .next()
+                .flatMap(merged -> refreshQuarters(connection, merged.getT2(), merged.getT3()).thenReturn(merged.getT1())));
+    }
+
+    @Override
+    public Mono<Void> deleteStaged(final String requestId) {
+        return databaseClient.sql("DELETE FROM stock_staging WHERE request_id = $1")
+                .bind(0, requestId)
+                .then();
+    }
+
+    @Override
+    public Mono<Integer> createPartitions(final int yearsAhead) {
+        return databaseClient.sql("SELECT create_stock_partitions($1) AS created")
+                .bind(0, yearsAhead)
+                .map(row -> row.get("created", Integer.class))
+                .one();
+    }
+
+    @Override
+    public Flux<Stock> findByQuery(final StockQuery query) {
+        return select("*", query)
+                .map((row, metadata) -> converter.read(Stock.class, row, metadata))
+                .all();
+    }
+
+    @Override
+    public Flux<Map<String, Object>> findFieldsByQuery(final StockQuery query) {
+        final RelationalPersistentEntity<?> entity = converter.getMappingContext().getRequiredPersistentEntity(Stock.class);
+        final List<RelationalPersistentProperty> properties = new ArrayList<>();
+        for (String field : query.getFields()) {
+            final RelationalPersistentProperty property = entity.getPersistentProperty(field);
+            if (property == null) {
+                return Flux.error(new InvalidQueryException(String.format("Unknown field [%s]", field)));
+            }
+            properties.add(property);
+        }
+        if (!query.getFields().contains(STOCK_DATE)) {
+            properties.add(entity.getRequiredPersistentProperty(STOCK_DATE));
+        }
+
+        final String columns = properties.stream()
+                .map(property -> property.getColumnName().getReference())
+                .collect(Collectors.joining(", "));
+
+        return select(columns, query)
+                .map(row -> {
+                    final Map<String, Object> fields = new LinkedHashMap<>();
+                    for (RelationalPersistentProperty property : properties) {
+                        final Object value = row.get(property.getColumnName().getReference());
+                        fields.put(property.getName(), value == null ? null : converter.getConversionService().convert(value, property.getType()));
+                    }
+                    return fields;
+                })
+                .all();
+    }
+
+    @Override
+    public Flux<Stock> findReturns(final LocalDate from, final LocalDate to) {
+        final StringBuilder sql = new StringBuilder("SELECT ticker, stock_date, percent_change_price FROM stock")
+                .append(" WHERE ticker IS NOT NULL AND stock_date IS NOT NULL AND percent_change_price IS NOT NULL");
+        if (from != null) {
+            sql.append(" AND stock_date >= :from");
+        }
+        if (to != null) {
+            sql.append(" AND stock_date <= :to");
+        }
+        sql.append(" ORDER BY ticker, stock_date");
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        if (from != null) {
+            spec = spec.bind("from", from);
+        }
+        if (to != null) {
+            spec = spec.bind("to", to);
+        }
+        return spec
+                .map(row -> new Stock(0, row.get("ticker", String.class), row.get("stock_date", LocalDate.class),
+                        null, null, null, null, null, row.get("percent_change_price", Double.class),
+                        null, null, null, null, null, 0, null))
+                .all();
+    }
+
+    @Override
+    public <T> Flux<T> findAllRows(final LocalDate from, final LocalDate to, final List<String> tickers, final int fetchSize, final Function<Row, T> mapper) {
+        return selectAll(COLUMNS, from, to, tickers, fetchSize).map(mapper).all();
+    }
+
+    @Override
+    public Flux<Stock> findAllStocks(final LocalDate from, final LocalDate to, final List<String> tickers, final int fetchSize) {
+        return selectAll("*", from, to, tickers, fetchSize)
+                .map((row, metadata) -> converter.read(Stock.class, row, metadata))
+                .all();
+    }
+
+    private DatabaseClient.GenericExecuteSpec selectAll(final String columns, final LocalDate from, final LocalDate to, final List<String> tickers, final int fetchSize) {
+        final List<String> conditions = new ArrayList<>();
+        if (from != null) {
+            conditions.add("stock_date >= :from");
+        }
+        if (to != null) {
+            conditions.add("stock_date <= :to");
+        }
+        if (tickers != null && !tickers.isEmpty()) {
+            conditions.add("ticker IN (:tickers)");
+        }
+        final String sql = "SELECT " + columns + " FROM stock"
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + " ORDER BY ticker, stock_date";
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql).filter(statement -> statement.fetchSize(fetchSize));
+        if (from != null) {
+            spec = spec.bind("from", from);
+        }
+        if (to != null) {
+            spec = spec.bind("to", to);
+        }
+        if (tickers != null && !tickers.isEmpty()) {
+            spec = spec.bind("tickers", tickers);
+        }
+        return spec;
+    }
+
+    private DatabaseClient.GenericExecuteSpec select(final String columns, final StockQuery query) {
+        final StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(" FROM stock WHERE ticker = :ticker");
+        if (query.getFrom() != null) {
+            sql.append(" AND stock_date >= :from");
+        }
+        if (query.getTo() != null) {
+            sql.append(" AND stock_date <= :to");
+        }
+        if (query.getAfter() != null) {
+            sql.append(" AND stock_date > :after");
+        }
+        sql.append(" ORDER BY stock_date");
+        if (query.getSize() != null) {
+            sql.append(" LIMIT :size");
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString()).bind("ticker", query.getTicker());
+        if (query.getFrom() != null) {
+            spec = spec.bind("from", query.getFrom());
+        }
+        if (query.getTo() != null) {
+            spec = spec.bind("to", query.getTo());
+        }
+        if (query.getAfter() != null) {
+            spec = spec.bind("after", query.getAfter());
+        }
+        if (query.getSize() != null) {
+            spec = spec.bind("size", query.getSize());
+        }
+        return spec;
+    }
+
+    private static Mono<Void> deferQuarters(final Connection connection) {
+        return Flux.from(connection.createStatement(DEFER_QUARTERS).execute())
+                .concatMap(Result::getRowsUpdated)
+                .then();
+    }
+
+    /**
+     * Refreshes the quarters of the specified stocks, each quarter once however many of its
+     * stocks the batch has.
+     */
+    private static Mono<Void> refreshQuarters(final Connection connection, final List<Stock> stocks) {
+        final Set<Map.Entry<String, LocalDate>> quarters = stocks.stream()
+                .filter(stock -> stock.getTicker() != null && stock.getStockDate() != null)
+                .map(stock -> new AbstractMap.SimpleImmutableEntry<>(stock.getTicker(), quarterStart(stock.getStockDate())))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return refreshQuarters(connection,
+                quarters.stream().map(Map.Entry::getKey).toArray(String[]::new),
+                quarters.stream().map(quarter -> quarter.getValue().toString()).toArray(String[]::new));
+    }
+
+    private static Mono<Void> refreshQuarters(final Connection connection, final String[] tickers, final String[] quarterStarts) {
+        return Flux.from(connection.createStatement(REFRESH_QUARTERS).bind(0, tickers).bind(1, quarterStarts).execute())
+                .concatMap(Result::getRowsUpdated)
+                .then();
+    }
+
+    private static LocalDate quarterStart(final LocalDate date) {
+        return LocalDate.of(date.getYear(), (date.getMonthValue() - 1) / 3 * 3 + 1, 1);
+    }
+
+    private static Stream<String> columnsExceptKey() {
+        return Arrays.stream(COLUMNS.split(", ")).filter(column -> !column.equals("ticker") && !column.equals("stock_date"));
+    }
+
+    private Publisher<UpsertResult> toUpsertResult(final Result result) {
+        return result.map((row, metadata) -> new UpsertResult(
+                converter.read(Stock.class, row, metadata),
+                Boolean.TRUE.equals(row.get("inserted", Boolean.class))));
+    }
+
+    /**
+     * Binds the columns of the specified stock, in the order of {@link #COLUMNS}, to the statement.
+     */
+    static Statement bind(final Statement statement, final Stock stock) {
+        bind(statement, 0, stock.getQuarter(), Integer.class);
+        bind(statement, 1, stock.getTicker(), String.class);
+        bind(statement, 2, stock.getStockDate(), LocalDate.class);
+        bind(statement, 3, stock.getOpen(), BigDecimal.class);
+        bind(statement, 4, stock.getHigh(), BigDecimal.class);
+        bind(statement, 5, stock.getLow(), BigDecimal.class);
+        bind(statement, 6, stock.getClose(), BigDecimal.class);
+        bind(statement, 7, stock.getVolume(), Long.class);
+        bind(statement, 8, stock.getPercentChangePrice(), Double.class);
+        bind(statement, 9, stock.getPercentChangeVolumeOverLastWeek(), Double.class);
+        bind(statement, 10, stock.getPreviousWeeksVolume(), Long.class);
+        bind(statement, 11, stock.getNextWeeksOpen(), BigDecimal.class);
+        bind(statement, 12, stock.getNextWeeksClose(), BigDecimal.class);
+        bind(statement, 13, stock.getPercentChangeNextWeeksPrice(), Double.class);
+        bind(statement, 14, stock.getDaysToNextDividend(), Integer.class);
+        bind(statement, 15, stock.getPercentReturnNextDividend(), Double.class);
+        return statement;
+    }
+
+    private static void bind(final Statement statement, final int index, final Object value, final Class<?> type) {
+        if (value == null) {
+            statement.bindNull(index, type);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.coding.challenge.service;
+
+import com.coding.challenge.dto.CorrelationMatrix;
+import com.coding.challenge.event.StockChangedEvent;
+import com.coding.challenge.exception.InvalidQueryException;
+import com.coding.challenge.model.Stock;
+import com.coding.challenge.repository.StockRepository;
+import com.coding.challenge.utility.Correlations;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class computes the correlation matrix of the weekly returns of all the tickers within
+ * a window of dates. The returns are loaded into arrays aligned on the weeks of the window,
+ * whose pairwise correlations are then computed on the common fork/join pool.
+ * <p>
+ * The matrices are cached by window and version of the stocks, which is bumped whenever stocks
+ * get inserted or updated, so that a matrix is only computed once between two changes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CorrelationService implements ApplicationListener<StockChangedEvent> {
+
+    private final StockRepository stockRepository;
+
+    @Value("${application.analytics.cacheSize}")
+    private long cacheSize;
+
+    private final AtomicLong version = new AtomicLong();
+    private AsyncCache<List<Object>, CorrelationMatrix> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .buildAsync();
+    }
+
+    /**
+     * @param from first date of the window, if any
+     * @param to last date of the window, if any
+     * @return correlation matrix of the tickers within the window, computed if not cached
+     */
+    public Mono<CorrelationMatrix> correlations(final LocalDate from, final LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return Mono.error(new InvalidQueryException(String.format("Date [%s] is after date [%s]", from, to)));
+        }
+        final List<Object> key = Arrays.asList(from, to, version.get());
+        return Mono.fromFuture(() -> cache.get(key, (k, executor) -> compute(from, to).toFuture()));
+    }
+
+    @Override
+    public void onApplicationEvent(final StockChangedEvent stockChangedEvent) {
+        version.incrementAndGet();
+        cache.synchronous().invalidateAll();
+    }
+
+    private Mono<CorrelationMatrix> compute(final LocalDate from, final LocalDate to) {
+        return stockRepository.findReturns(from, to)
+                .reduce(new Returns(), Returns::add)
+                .publishOn(Schedulers.boundedElastic())
+                .map(returns -> {
+                    final long startedAt = System.currentTimeMillis();
+                    final int[] weeks = returns.weeks();
+                    final Correlations correlations = Correlations.compute(returns.align(weeks), ForkJoinPool.commonPool());
+                    log.info("Correlations computed : [Tickers={}] [Weeks={}] [Millis={}]", returns.tickers.size(), weeks.length, System.currentTimeMillis() - startedAt);
+                    return new CorrelationMatrix(from, to, returns.tickers, weeks.length,
+                            toValues(correlations.getCorrelations()), toValues(correlations.getCovariances()));
+                });
+    }
+
+    private static Double[][] toValues(final double[][] matrix) {
+        final Double[][] values = new Double[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            values[i] = new Double[matrix[i].length];
+            for (int j = 0; j < matrix[i].length; j++) {
+                values[i][j] = Double.isNaN(matrix[i][j]) ? null : matrix[i][j];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns of each ticker, as read ordered by ticker and date, kept as arrays of the epoch
+     * days and returns of the stocks of the ticker.
+     */
+    private static class Returns {
+
+        private final List<String> tickers = new ArrayList<>();
+        private final List<int[]> days = new ArrayList<>();
+        private final List<double[]> values = new ArrayList<>();
+        private final TreeSet<Integer> allDays = new TreeSet<>();
+        private int count;
+
+        Returns add(final Stock stock) {
+            final int last = tickers.size() - 1;
+            if (last < 0 || !tickers.get(last).equals(stock.getTicker())) {
+                trim();
+                tickers.add(stock.getTicker());
+                days.add(new int[16]);
+                values.add(new double[16]);
+                count = 0;
+            }
+            final int current = tickers.size() - 1;
+            if (count == days.get(current).length) {
+                days.set(current, Arrays.copyOf(days.get(current), count * 2));
+                values.set(current, Arrays.copyOf(values.get(current), count * 2));
+            }
+            final int day = (int) stock.getStockDate().toEpochDay();
+            days.get(current)[count] = day;
+            values.get(current)[count] = stock.getPercentChangePrice();
+            count++;
+            allDays.add(day);
+            return this;
+        }
+
+        int[] weeks() {
+            trim();
+            return allDays.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * @return returns of each ticker on each of the specified days, NaN if missing
+         */
+        double[][] align(final int[] weeks) {
+            final double[][] series = new double[tickers.size()][weeks.length];
+            for (int i = 0; i < series.length; i++) {
+                Arrays.fill(series[i], Double.NaN);
+                final int[] tickerDays = days.get(i);
+                for (int t = 0; t < tickerDays.length; t++) {
+                    series[i][Arrays.binarySearch(weeks, tickerDays[t])] = values.get(i)[t];
+                }
+            }
+            return series;
+        }
+
+        private void trim() {
+            final int last = tickers.size() - 1;
+            if (last >= 0 && days.get(last).length != count) {
+                days.set(last, Arrays.copyOf(days.get(last), count));
+                values.set(last, Arrays.copyOf(values.get(last), count));
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.coding.challenge.service;
+
+import com.coding.challenge.exception.InvalidQueryException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+
+/**
+ * Defines how the exported stocks are written.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+
+    /**
+     * The stocks are written as a csv file that can be uploaded as is, i.e. with the same
+     * header and the prices prefixed by <code>$</code>.
+     */
+    CSV(MediaType.parseMediaType("text/csv"), "csv"),
+
+    /**
+     * The stocks are written as newline delimited json that can be streamed back as is, i.e.
+     * with the same fields as {@link com.coding.challenge.dto.Stock}.
+     */
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    /**
+     * @param extension of the format, in any case
+     * @return format of the specified extension
+     * @throws InvalidQueryException if the format is unknown
+     */
+    public static ExportFormat of(final String extension) {
+        for (ExportFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(extension)) {
+                return format;
+            }
+        }
+        throw new InvalidQueryException(String.format("Unknown format [%s]", extension));
+    }
+}
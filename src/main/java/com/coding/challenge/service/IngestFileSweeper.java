@@ -0,0 +1,117 @@
+package com.coding.challenge.service;
+
+import com.coding.challenge.model.IngestCheckpoint;
+import com.coding.challenge.repository.IngestCheckpointRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * This class deletes the files of the validation errors and of the rejected lines the ingest
+ * jobs leave behind: At startup, then at a fixed interval, the files of the jobs the scheduler
+ * no longer knows, e.g. expired or run before a restart, are deleted once older than the
+ * retention of the jobs. The files of the jobs to be resumed from a checkpoint are kept.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestFileSweeper {
+
+    private static final String ERRORS_SUFFIX = "-errors.csv";
+    private static final String REJECTS_SUFFIX = "-rejects.csv";
+
+    private final IngestJobScheduler ingestJobScheduler;
+    private final IngestCheckpointRepository ingestCheckpointRepository;
+
+    @Value("${application.ingest.errorDir}")
+    private String errorDir;
+    @Value("${application.jobs.retentionMillis}")
+    private long retentionMillis;
+
+    private Disposable sweeper;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        sweeper = Flux.interval(Duration.ZERO, Duration.ofMillis(Math.max(retentionMillis / 2, 1)))
+                .onBackpressureDrop()
+                .concatMap(tick -> sweep()
+                        .doOnNext(deleted -> {
+                            if (deleted > 0) {
+                                log.info("Ingest files deleted : [Files={}]", deleted);
+                            }
+                        })
+                        .onErrorResume(e -> {
+                            log.error("Could not delete the ingest files", e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.dispose();
+        }
+    }
+
+    /**
+     * This method deletes the expired files of the error directory, only considering the files
+     * named after a request id as the directory may be shared, e.g. the temporary directory.
+     *
+     * @return number of files deleted
+     */
+    Mono<Long> sweep() {
+        final long limit = System.currentTimeMillis() - retentionMillis;
+        return ingestCheckpointRepository.findAll()
+                .map(IngestCheckpoint::getRequestId)
+                .collect(Collectors.toSet())
+                .flatMap(checkpointed -> Mono.fromCallable(() -> sweep(checkpointed, limit)).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private long sweep(final Set<String> checkpointed, final long limit) throws IOException {
+        long deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(errorDir), "*{" + ERRORS_SUFFIX + "," + REJECTS_SUFFIX + "}")) {
+            for (Path file : files) {
+                final String requestId = requestId(file.getFileName().toString());
+                if (requestId == null || checkpointed.contains(requestId) || ingestJobScheduler.isKnown(requestId)) {
+                    continue;
+                }
+                if (Files.getLastModifiedTime(file).toMillis() < limit && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * @return request id the specified file is named after, if any
+     */
+    private static String requestId(final String fileName) {
+        final String suffix = fileName.endsWith(ERRORS_SUFFIX) ? ERRORS_SUFFIX : REJECTS_SUFFIX;
+        final String requestId = fileName.substring(0, fileName.length() - suffix.length());
+        try {
+            return UUID.fromString(requestId).toString().equals(requestId) ? requestId : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
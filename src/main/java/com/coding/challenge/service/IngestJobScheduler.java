@@ -0,0 +1,296 @@
+package com.coding.challenge.service;
+
+import com.coding.challenge.dto.IngestJob;
+import com.coding.challenge.dto.UploadProgress;
+import com.coding.challenge.dto.UploadResult;
+import com.coding.challenge.event.UploadProgressEvent;
+import com.coding.challenge.exception.TooManyJobsException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class runs the ingest jobs of the uploaded files. At most a given number of jobs run at
+ * once, so that uploads cannot take all the database connections, the following ones being
+ * queued up to a given number, beyond which uploads are rejected. Jobs can be cancelled and are
+ * kept for a while once finished so that their outcome can be looked up. A job which finished
+ * without reporting its end, e.g. cancelled while queued, gets its final progress reported.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestJobScheduler implements ApplicationListener<UploadProgressEvent>, MeterBinder {
+
+    private final ApplicationEventPublisher publisher;
+
+    @Value("${application.jobs.maxConcurrent}")
+    private int maxConcurrent;
+    @Value("${application.jobs.maxQueued}")
+    private int maxQueued;
+    @Value("${application.jobs.retentionMillis}")
+    private long retentionMillis;
+    @Value("${application.jobs.shutdownTimeoutMillis}")
+    private long shutdownTimeoutMillis;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Deque<Job> queue = new ArrayDeque<>();
+    private int running;
+    private boolean shutdown;
+
+    private Disposable expiry;
+
+    @PostConstruct
+    public void startExpiry() {
+        expiry = Flux.interval(Duration.ofMillis(Math.max(retentionMillis / 2, 1)))
+                .subscribe(tick -> expire());
+    }
+
+    /**
+     * Lets the running jobs finish within the shutdown timeout, interrupting the queued ones
+     * straight away and the running ones once the timeout elapsed. This happens as soon as the
+     * context is closed, before the beans the jobs use, e.g. the connection pool, get destroyed.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void shutdown() throws InterruptedException {
+        expiry.dispose();
+        shutdown = true;
+        while (!queue.isEmpty()) {
+            finish(queue.poll(), IngestJob.State.INTERRUPTED, null);
+        }
+        final long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        while (running > 0 && System.currentTimeMillis() < deadline) {
+            log.info("Waiting for [{}] ingest job(s) to finish", running);
+            wait(Math.max(deadline - System.currentTimeMillis(), 1));
+        }
+        jobs.values().stream()
+                .filter(job -> job.state == IngestJob.State.RUNNING)
+                .forEach(job -> cancel(job, IngestJob.State.INTERRUPTED));
+    }
+
+    /**
+     * @throws TooManyJobsException if a new job would be rejected
+     */
+    public synchronized void checkCapacity() {
+        if (shutdown || (running >= maxConcurrent && queue.size() >= maxQueued)) {
+            throw new TooManyJobsException(String.format("Too many ingest jobs : [Running=%d] [Queued=%d]", running, queue.size()));
+        }
+    }
+
+    /**
+     * Submits the specified work as a new job, which is run straight away or queued.
+     *
+     * @param requestId unique identifier of the upload
+     * @param fileName of the upload
+     * @param work ingest to be subscribed to once the job runs
+     * @return final state of the job, whether it completed, failed or was cancelled
+     * @throws TooManyJobsException if the queue is full
+     */
+    public synchronized Mono<IngestJob.State> submit(final String requestId, final String fileName, final Mono<UploadResult> work) {
+        checkCapacity();
+        final Job job = new Job(requestId, fileName, work);
+        jobs.put(requestId, job);
+        if (running < maxConcurrent) {
+            start(job);
+        } else {
+            log.info("[RequestId={}] Ingest job queued : [Queued={}]", requestId, queue.size() + 1);
+            queue.add(job);
+        }
+        return job.finished.asMono();
+    }
+
+    public Flux<IngestJob> findAll() {
+        return Flux.fromIterable(jobs.values()).map(Job::toIngestJob);
+    }
+
+    public Mono<IngestJob> findById(final String requestId) {
+        return Mono.justOrEmpty(jobs.get(requestId)).map(Job::toIngestJob);
+    }
+
+    /**
+     * @return whether the specified job is queued, running or finished but not yet expired
+     */
+    public boolean isKnown(final String requestId) {
+        return jobs.containsKey(requestId);
+    }
+
+    /**
+     * @return latest progress of the specified job, which is final once the job finished, or
+     * empty if the job is unknown or did not report its progress yet
+     */
+    public Optional<UploadProgress> findProgress(final String requestId) {
+        return Optional.ofNullable(jobs.get(requestId)).map(job -> job.progress);
+    }
+
+    /**
+     * Cancels the specified job, whether it is queued or running.
+     *
+     * @param requestId unique identifier of the upload
+     * @return the cancelled job, or the job as is if it had already finished
+     */
+    public synchronized Optional<IngestJob> cancel(final String requestId) {
+        final Job job = jobs.get(requestId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        cancel(job, IngestJob.State.CANCELLED);
+        return Optional.of(job.toIngestJob());
+    }
+
+    private void cancel(final Job job, final IngestJob.State state) {
+        if (job.state == IngestJob.State.QUEUED) {
+            queue.remove(job);
+            finish(job, state, null);
+        } else if (job.state == IngestJob.State.RUNNING) {
+            log.info("[RequestId={}] Cancelling ingest job : [State={}]", job.requestId, state);
+            job.disposable.dispose();
+            onFinished(job, state, null);
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("stock.ingest.jobs", this, IngestJobScheduler::runningCount)
+                .description("Ingest jobs, by state")
+                .tag("state", IngestJob.State.RUNNING.name())
+                .register(registry);
+        Gauge.builder("stock.ingest.jobs", this, IngestJobScheduler::queuedCount)
+                .description("Ingest jobs, by state")
+                .tag("state", IngestJob.State.QUEUED.name())
+                .register(registry);
+    }
+
+    private synchronized double runningCount() {
+        return running;
+    }
+
+    private synchronized double queuedCount() {
+        return queue.size();
+    }
+
+    @Override
+    public void onApplicationEvent(final UploadProgressEvent uploadProgressEvent) {
+        final Job job = jobs.get(uploadProgressEvent.getRequestId());
+        if (job != null) {
+            job.progress = uploadProgressEvent.getProgress();
+        }
+    }
+
+    private void start(final Job job) {
+        running++;
+        job.state = IngestJob.State.RUNNING;
+        job.startedAt = Instant.now();
+        job.disposable = job.work.subscribe(
+                result -> job.progress = new UploadProgress(job.requestId, UploadProgress.State.COMPLETED, result.getStatus(),
+                        result.getTotalRowsRead(), result.getTotalRowsIngested(), result.getTotalErrorRows()),
+                error -> onFinished(job, IngestJob.State.FAILED, error),
+                () -> onFinished(job, IngestJob.State.COMPLETED, null)
+        );
+    }
+
+    private synchronized void onFinished(final Job job, final IngestJob.State state, final Throwable error) {
+        if (job.state != IngestJob.State.RUNNING) {
+            return;
+        }
+        running--;
+        finish(job, state, error);
+        while (running < maxConcurrent && !queue.isEmpty()) {
+            start(queue.poll());
+        }
+        notifyAll();
+    }
+
+    private void finish(final Job job, final IngestJob.State state, final Throwable error) {
+        if (error != null) {
+            log.error(String.format("[RequestId=%s] Ingest job failed", job.requestId), error);
+        }
+        job.state = state;
+        job.error = error == null ? null : error.getMessage();
+        job.finishedAt = Instant.now();
+        final UploadProgress current = job.progress;
+        if (current == null || !current.isFinished()) {
+            publisher.publishEvent(new UploadProgressEvent(finalProgress(job.requestId, state, current)));
+        }
+        job.finished.tryEmitValue(state);
+    }
+
+    private static UploadProgress finalProgress(final String requestId, final IngestJob.State state, final UploadProgress current) {
+        final UploadProgress.State progressState;
+        final UploadResult.Status status;
+        if (state == IngestJob.State.FAILED) {
+            progressState = UploadProgress.State.FAILED;
+            status = UploadResult.Status.ERROR;
+        } else {
+            progressState = state == IngestJob.State.COMPLETED ? UploadProgress.State.COMPLETED : UploadProgress.State.INTERRUPTED;
+            status = current == null ? null : current.getStatus();
+        }
+        return current == null
+                ? new UploadProgress(requestId, progressState, status, 0, 0, 0)
+                : new UploadProgress(requestId, progressState, status,
+                current.getTotalRowsRead(), current.getTotalRowsIngested(), current.getTotalErrorRows());
+    }
+
+    private void expire() {
+        final Instant limit = Instant.now().minusMillis(retentionMillis);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(limit));
+    }
+
+    private static class Job {
+
+        private final String requestId;
+        private final String fileName;
+        private final Mono<UploadResult> work;
+        private final Instant submittedAt = Instant.now();
+        private final Sinks.One<IngestJob.State> finished = Sinks.one();
+
+        private volatile IngestJob.State state = IngestJob.State.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile UploadProgress progress;
+        private volatile String error;
+        private volatile Disposable disposable;
+
+        private Job(final String requestId, final String fileName, final Mono<UploadResult> work) {
+            this.requestId = requestId;
+            this.fileName = fileName;
+            this.work = work;
+        }
+
+        private IngestJob toIngestJob() {
+            final UploadProgress current = progress;
+            return new IngestJob(
+                    requestId,
+                    fileName,
+                    state,
+                    submittedAt,
+                    startedAt,
+                    finishedAt,
+                    current == null ? null : current.getStatus(),
+                    current == null ? 0 : current.getTotalRowsRead(),
+                    current == null ? 0 : current.getTotalRowsIngested(),
+                    current == null ? 0 : current.getTotalErrorRows(),
+                    error
+            );
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.coding.challenge.service;
+
+/**
+ * Defines how the content of an uploaded file is ingested.
+ */
+public enum IngestMode {
+
+    /**
+     * The uploaded file is written to a temp file which is then read line by line.
+     */
+    FILE,
+
+    /**
+     * The uploaded file is written to a temp file which is then memory-mapped and split into
+     * chunks of lines, parsed and validated on all the cores.
+     */
+    PARALLEL,
+
+    /**
+     * The uploaded file is read line by line as its bytes arrive, without any temp file.
+     */
+    STREAM,
+
+    /**
+     * The uploaded file is written to a temp file whose lines are loaded into a staging table,
+     * which is then merged into the stocks with a single statement, only writing the new and
+     * the changed stocks.
+     */
+    MERGE
+}
@@ -0,0 +1,61 @@
+package com.coding.challenge.service;
+
+import com.coding.challenge.repository.StockRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * This class keeps the yearly partitions of the stock table ahead of the stocks: At startup,
+ * then at a fixed interval, it creates the partitions of the current year and of the next
+ * ones, as well as the partitions of the stocks which went to the default partition for want
+ * of a partition of their year, e.g. historical stocks, so that the default partition stays
+ * small and the searches by date only scan the partitions of their dates.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockPartitionMaintainer {
+
+    private final StockRepository stockRepository;
+
+    @Value("${application.partitions.yearsAhead}")
+    private int yearsAhead;
+    @Value("${application.partitions.intervalMillis}")
+    private long intervalMillis;
+
+    private Disposable maintenance;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        maintenance = Flux.interval(Duration.ZERO, Duration.ofMillis(intervalMillis))
+                .onBackpressureDrop()
+                .concatMap(tick -> stockRepository.createPartitions(yearsAhead)
+                        .doOnNext(created -> {
+                            if (created > 0) {
+                                log.info("Stock partitions created : [Partitions={}]", created);
+                            }
+                        })
+                        .onErrorResume(e -> {
+                            log.error("Could not create the stock partitions", e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (maintenance != null) {
+            maintenance.dispose();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.coding.challenge.service;
+
+import com.coding.challenge.dto.StockQuery;
+import com.coding.challenge.dto.StockSeriesSlice;
+import com.coding.challenge.event.StockChangedEvent;
+import com.coding.challenge.model.Stock;
+import com.coding.challenge.model.StockSeries;
+import com.coding.challenge.repository.StockRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps the stocks of every ticker in memory as {@link StockSeries}, so that the
+ * searches by ticker are answered by binary searches over arrays of primitives, the stocks
+ * only being written out when the response is serialized. The store is optional and only
+ * loaded from the database at startup when enabled. The stocks are then read through a cursor
+ * ordered by ticker and date, the series of each ticker being stored as soon as its stocks
+ * were read, so that only the stocks of one ticker are held at a time besides the series.
+ * <p>
+ * Each change of the stocks of a ticker bumps the version of the ticker and queues the
+ * reload of its series. Until the series of a ticker is loaded at its latest version, its
+ * searches are left to the database, so that the store never returns outdated stocks.
+ * <p>
+ * A changed ticker is reloaded as a whole rather than patched with the changed stocks: The
+ * events of concurrent transactions are not published in the order they commit, so that
+ * patching could leave a stock as of the transaction which committed first, whereas a
+ * reload reads the committed stocks. A merge besides only tells the changed tickers. As a
+ * series is immutable, a patch would copy all its arrays anyway, so that a reload only adds
+ * the query of the stocks of the ticker, and the events of a ticker whose reload is still
+ * queued share that reload.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockSeriesStore {
+
+    private final StockRepository stockRepository;
+
+    @Value("${application.store.enabled}")
+    private boolean enabled;
+    @Value("${application.store.fetchSize}")
+    private int fetchSize;
+
+    private final Map<String, StockSeries> series = new ConcurrentHashMap<>();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final Sinks.Many<String> reloads = Sinks.many().unicast().onBackpressureBuffer();
+
+    private volatile boolean loaded;
+    private Disposable reloader;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        final long startedAt = System.currentTimeMillis();
+        final Map<String, Long> loadedVersions = new ConcurrentHashMap<>(versions);
+
+        stockRepository.findAllStocks(null, null, null, fetchSize)
+                .filter(stock -> stock.getTicker() != null)
+                .bufferUntilChanged(Stock::getTicker)
+                .doOnNext(stocks -> {
+                    final String ticker = stocks.get(0).getTicker();
+                    store(ticker, loadedVersions.getOrDefault(ticker, 0L), stocks);
+                })
+                .then()
+                .doOnSuccess(s -> {
+                    loaded = true;
+                    log.info("Stock series loaded : [Tickers={}] [Millis={}]", series.size(), System.currentTimeMillis() - startedAt);
+                })
+                .doOnError(e -> log.error("Could not load the stock series", e))
+                .subscribe();
+
+        reloader = reloads.asFlux()
+                .concatMap(ticker -> {
+                    queued.remove(ticker);
+                    final long version = versions.getOrDefault(ticker, 0L);
+                    return stockRepository.findStockByTicker(ticker)
+                            .collectList()
+                            .doOnNext(stocks -> store(ticker, version, stocks))
+                            .onErrorResume(e -> {
+                                log.warn(String.format("Could not reload the stock series of [Ticker=%s]", ticker), e);
+                                return Mono.empty();
+                            });
+                })
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reloader != null) {
+            reloader.dispose();
+        }
+    }
+
+    /**
+     * This method finds the stocks matching the specified query, provided the store holds the
+     * latest stocks of its ticker.
+     *
+     * @param query criteria of the search
+     * @param fields to be returned, all if null
+     * @return matching stocks, or empty if the database has to be queried
+     */
+    public Optional<StockSeriesSlice> find(final StockQuery query, final List<String> fields) {
+        final StockSeries stockSeries = loaded ? series.get(query.getTicker()) : null;
+        if (stockSeries == null || stockSeries.getVersion() != versions.getOrDefault(query.getTicker(), 0L)) {
+            return Optional.empty();
+        }
+
+        int start = 0;
+        int end = stockSeries.getSize();
+        if (query.getFrom() != null) {
+            start = stockSeries.indexOf(query.getFrom());
+        }
+        if (query.getAfter() != null) {
+            start = Math.max(start, stockSeries.indexAfter(query.getAfter()));
+        }
+        if (query.getTo() != null) {
+            end = stockSeries.indexAfter(query.getTo());
+        }
+        end = Math.max(start, end);
+        if (query.getSize() != null) {
+            end = Math.min(end, start + query.getSize());
+        }
+        return Optional.of(new StockSeriesSlice(stockSeries, start, end, fields));
+    }
+
+    /**
+     * Invalidates the series of the changed tickers, and queues their reload.
+     */
+    @EventListener
+    public synchronized void onStockChanged(final StockChangedEvent stockChangedEvent) {
+        if (!enabled) {
+            return;
+        }
+        for (String ticker : stockChangedEvent.getTickers()) {
+            versions.merge(ticker, 1L, Long::sum);
+            if (queued.add(ticker)) {
+                reloads.emitNext(ticker, Sinks.EmitFailureHandler.FAIL_FAST);
+            }
+        }
+    }
+
+    private void store(final String ticker, final long version, final Collection<Stock> stocks) {
+        if (stocks.stream().anyMatch(stock -> stock.getStockDate() == null)) {
+            series.remove(ticker);      // Such stocks cannot be ordered by date, the database has to be queried.
+        } else {
+            series.merge(ticker, StockSeries.of(ticker, version, stocks), (current, loaded) ->
+                    loaded.getVersion() >= current.getVersion() ? loaded : current);
+        }
+    }
+}
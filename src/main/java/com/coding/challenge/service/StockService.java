@@ -1,28 +1,146 @@
 package com.coding.challenge.service;
 
+import com.coding.challenge.dto.IngestJob;
+import com.coding.challenge.dto.LineResult;
+import com.coding.challenge.dto.StockAck;
+import com.coding.challenge.dto.StockAnalytics;
+import com.coding.challenge.dto.StockQuery;
+import com.coding.challenge.dto.StockSeriesSlice;
+import com.coding.challenge.dto.UploadResult;
+import com.coding.challenge.dto.UpsertResult;
+import com.coding.challenge.event.StockChangedEvent;
+import com.coding.challenge.exception.InvalidQueryException;
+import com.coding.challenge.exception.TooManyJobsException;
+import com.coding.challenge.model.IngestCheckpoint;
 import com.coding.challenge.model.Stock;
+import com.coding.challenge.model.StockQuarter;
+import com.coding.challenge.repository.IngestCheckpointRepository;
+import com.coding.challenge.repository.StockQuarterRepository;
 import com.coding.challenge.repository.StockRepository;
 import com.coding.challenge.utility.FileHelper;
+import com.coding.challenge.utility.FileRejectSink;
+import com.coding.challenge.utility.StockExportWriter;
+import com.coding.challenge.utility.StockSnapshotWriter;
+import com.coding.challenge.utility.Indicators;
 import com.coding.challenge.utility.StockMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.Row;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StockService {
 
+    private static final String SNAPSHOT_MODE = "SNAPSHOT";
+
     private final FileHelper fileHelper;
     private final StockRepository stockRepository;
+    private final StockQuarterRepository stockQuarterRepository;
+    private final IngestCheckpointRepository ingestCheckpointRepository;
+    private final IngestJobScheduler ingestJobScheduler;
+    private final TransactionalOperator transactionalOperator;
+    private final TickerCache tickerCache;
+    private final StockSeriesStore stockSeriesStore;
+    private final ApplicationEventPublisher publisher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${application.ingest.mode}")
+    private IngestMode ingestMode;
+    @Value("${application.ingest.batchSize}")
+    private int batchSize;
+    @Value("${application.query.maxPageSize}")
+    private int maxPageSize;
+    @Value("${application.export.fetchSize}")
+    private int exportFetchSize;
+    @Value("${application.export.rowsPerBuffer}")
+    private int exportRowsPerBuffer;
+    @Value("${application.jobs.resumeBackoffMillis}")
+    private long resumeBackoffMillis;
+    @Value("${application.jobs.resumeMaxBackoffMillis}")
+    private long resumeMaxBackoffMillis;
+
+    /**
+     * Instance of the application whose temp files the checkpoints refer to, the host name
+     * unless specified, as the temp files are only found on the host which wrote them.
+     */
+    @Value("${application.instance.id:#{T(java.net.InetAddress).getLocalHost().getHostName()}}")
+    private String instanceId;
+
+    private Disposable resumption;
+
+    private Counter storeQueries;
+    private Counter cacheQueries;
+    private Counter databaseQueries;
+    private final Map<StockAck.Status, Counter> upsertedStocks = new EnumMap<>(StockAck.Status.class);
+
+    /**
+     * Registers the counters of the searches by source, i.e. how many of them the store and
+     * the cache spare the database, and of the upserted stocks by outcome.
+     */
+    @PostConstruct
+    public void initMetrics() {
+        storeQueries = queryCounter("store");
+        cacheQueries = queryCounter("cache");
+        databaseQueries = queryCounter("database");
+        for (StockAck.Status status : StockAck.Status.values()) {
+            upsertedStocks.put(status, Counter.builder("stock.upsert.stocks")
+                    .description("Upserted stocks, by outcome")
+                    .tag("status", status.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    private Counter queryCounter(final String source) {
+        return Counter.builder("stock.query")
+                .description("Searches of the stocks of a ticker, by source of the stocks")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
 
     public Mono<String> save(FilePart filePart) {
 
@@ -31,32 +149,408 @@ public class StockService {
         final String baseName = FilenameUtils.getBaseName(filePart.filename());
         final String format = LocalDateTime.now().format(DateTimeFormatter.BASIC_ISO_DATE);
 
-        log.info("[RequestId={}] File received : [{}]", requestId, filePart.filename());
+        log.info("[RequestId={}] File received : [{}] [Mode={}]", requestId, filePart.filename(), ingestMode);
+
+        if (ingestMode == IngestMode.STREAM) {
+            return submitContent(requestId, filePart.filename(), filePart.content());
+        }
+
+        return Mono.fromRunnable(ingestJobScheduler::checkCapacity)
+                .then(fileHelper.createTempFile(String.format("%s-%s", baseName, format), extension))
+                .flatMap(t -> filePart.transferTo(t)
+                        .then(submitFile(IngestCheckpoint.of(requestId, instanceId, filePart.filename(), t.toString(), ingestMode.name()), t.toFile()))
+                        .doOnError(e -> fileHelper.deleteFile(requestId, t.toFile())))
+                .thenReturn(requestId);
+    }
+
+    public Mono<String> save(Flux<DataBuffer> content) {
+
+        final String requestId = UUID.randomUUID().toString();
+
+        log.info("[RequestId={}] Content received : [Mode={}]", requestId, IngestMode.STREAM);
 
-        return fileHelper.createTempFile(String.format("%s-%s", baseName, format), extension)
-                .flatMap(t -> filePart.transferTo(t).doOnSuccess(v -> fileHelper.processFile(requestId, t.toFile())))
-                .map(v -> requestId);
+        return submitContent(requestId, null, content);
+    }
+
+    /**
+     * This method handles the upload of a {@link com.coding.challenge.utility.StockSnapshot},
+     * which is written to a temp file whose stocks are then read from the mapped file.
+     *
+     * @param content of the snapshot
+     * @return request id of the upload
+     */
+    public Mono<String> saveSnapshot(Flux<DataBuffer> content) {
+
+        final String requestId = UUID.randomUUID().toString();
+
+        log.info("[RequestId={}] Snapshot received", requestId);
+
+        return Mono.fromRunnable(ingestJobScheduler::checkCapacity)
+                .then(fileHelper.createTempFile("snapshot-" + requestId, ".stks"))
+                .flatMap(t -> DataBufferUtils.write(content, t)
+                        .then(submitFile(IngestCheckpoint.of(requestId, instanceId, null, t.toString(), SNAPSHOT_MODE), t.toFile()))
+                        .doOnError(e -> fileHelper.deleteFile(requestId, t.toFile())))
+                .thenReturn(requestId);
+    }
+
+    /**
+     * This method records the checkpoint of the ingest of the specified file before submitting
+     * it, so that the ingest is resumed should the application stop before it is over.
+     */
+    private Mono<Void> submitFile(final IngestCheckpoint checkpoint, final File file) {
+        return ingestCheckpointRepository
+                .create(checkpoint.getRequestId(), checkpoint.getInstanceId(), checkpoint.getFileName(), checkpoint.getFilePath(), checkpoint.getMode())
+                .then(Mono.<Void>fromRunnable(() -> submitFile(checkpoint, file, ingestWork(checkpoint, file))))
+                .onErrorResume(e -> ingestCheckpointRepository.deleteById(checkpoint.getRequestId()).then(Mono.error(e)));
+    }
+
+    /**
+     * This method submits the ingest of the specified file, which gets deleted along with its
+     * checkpoint once the job is over, whatever its outcome, but for a job interrupted by the
+     * shutdown which is resumed once the application restarts.
+     */
+    private void submitFile(final IngestCheckpoint checkpoint, final File file, final Mono<UploadResult> work) {
+        final String requestId = checkpoint.getRequestId();
+        ingestJobScheduler.submit(requestId, checkpoint.getFileName(), work)
+                .filter(state -> state != IngestJob.State.INTERRUPTED)
+                .flatMap(state -> {
+                    fileHelper.deleteFile(requestId, file);
+                    return ingestCheckpointRepository.deleteById(requestId);
+                })
+                .subscribe(null, e -> log.warn(String.format("[RequestId=%s] Could not delete the ingest checkpoint", requestId), e));
+    }
+
+    /**
+     * This method picks the ingest of the specified checkpoint: A parallel ingest is resumed
+     * line by line, as the chunks of the file do not start at the checkpoint, while a merge
+     * always starts over.
+     */
+    private Mono<UploadResult> ingestWork(final IngestCheckpoint checkpoint, final File file) {
+        if (SNAPSHOT_MODE.equals(checkpoint.getMode())) {
+            return fileHelper.ingestSnapshot(checkpoint, file);
+        } else if (IngestMode.MERGE.name().equals(checkpoint.getMode())) {
+            return fileHelper.mergeFile(checkpoint.getRequestId(), file);
+        } else if (IngestMode.PARALLEL.name().equals(checkpoint.getMode()) && checkpoint.getLastLine() == 0) {
+            return fileHelper.ingestFileInParallel(checkpoint, file);
+        } else {
+            return fileHelper.ingestFile(checkpoint, file);
+        }
+    }
+
+    /**
+     * This method resumes the ingest jobs of this instance interrupted by the shutdown or the
+     * crash of the application from their checkpoints, the checkpoints whose file is gone
+     * being deleted. The checkpoints of the other instances are left to them, as their files
+     * are not on this host. The jobs the scheduler cannot take yet are queued, i.e. submitted
+     * again with an exponential backoff, the next jobs waiting for them in turn.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeIngests() {
+        resumption = ingestCheckpointRepository.findByInstanceId(instanceId)
+                .concatMap(checkpoint -> {
+                    final File file = new File(checkpoint.getFilePath());
+                    if (!file.exists()) {
+                        log.warn("[RequestId={}] Ingest cannot be resumed, [File={}] is gone", checkpoint.getRequestId(), file);
+                        return ingestCheckpointRepository.deleteById(checkpoint.getRequestId());
+                    }
+                    log.info("[RequestId={}] Ingest interrupted, resuming : [{}]", checkpoint.getRequestId(), checkpoint);
+                    return Mono.<Void>fromRunnable(() -> submitFile(checkpoint, file, ingestWork(checkpoint, file)))
+                            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(resumeBackoffMillis))
+                                    .maxBackoff(Duration.ofMillis(resumeMaxBackoffMillis))
+                                    .filter(TooManyJobsException.class::isInstance)
+                                    .doBeforeRetry(signal -> log.info("[RequestId={}] Ingest queued for resumption : [Attempt={}] [{}]",
+                                            checkpoint.getRequestId(), signal.totalRetries() + 1, signal.failure().getMessage())));
+                })
+                .subscribe(null, e -> log.error("Could not resume the interrupted ingest jobs", e));
+    }
+
+    /**
+     * This method stops resuming the interrupted jobs on shutdown, those still queued being
+     * resumed once the application restarts.
+     */
+    @PreDestroy
+    public void stopResuming() {
+        if (resumption != null) {
+            resumption.dispose();
+        }
+    }
+
+    /**
+     * This method submits the ingest of the specified content. The content is only read once
+     * the job runs, hence the request completing when the content was fully read or when the
+     * job is over, e.g. if it got cancelled while queued.
+     */
+    private Mono<String> submitContent(final String requestId, final String fileName, final Flux<DataBuffer> content) {
+        final Sinks.Empty<Void> contentRead = Sinks.empty();
+        return Mono.defer(() -> {
+            final Mono<Void> finished = ingestJobScheduler.submit(requestId, fileName,
+                    fileHelper.ingestContent(requestId, content.doFinally(s -> contentRead.tryEmitEmpty()))).then();
+            return Mono.firstWithSignal(contentRead.asMono(), finished);
+        }).thenReturn(requestId);
+    }
+
+    /**
+     * This method reads the csv file of the lines rejected by the ingest of an upload, as they
+     * were uploaded and followed by the reason of their rejection, so that they can be fixed
+     * and uploaded again. The file is read as is, i.e. up to the last lines written while the
+     * job runs.
+     *
+     * @param requestId of the upload
+     * @param bufferFactory to allocate the buffers from, e.g. the pool of the response
+     * @return content of the file, only its header if no line was rejected, or empty if the
+     * upload is unknown
+     */
+    public Mono<Flux<DataBuffer>> findRejects(String requestId, DataBufferFactory bufferFactory) {
+        if (!isRequestId(requestId)) {
+            return Mono.empty();
+        }
+        final Path path = fileHelper.rejectsPath(requestId);
+        return Mono.fromCallable(() -> Files.exists(path))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(exists -> exists
+                        ? Mono.just(DataBufferUtils.read(path, bufferFactory, 65536))
+                        : ingestJobScheduler.findById(requestId)
+                        .map(job -> Flux.just(bufferFactory.wrap((FileRejectSink.HEADER + "\n").getBytes(StandardCharsets.UTF_8)))));
+    }
+
+    /**
+     * @return whether the specified value is a request id as generated, so that it can be part of a path
+     */
+    private static boolean isRequestId(final String value) {
+        try {
+            return UUID.fromString(value).toString().equals(value);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 
     public Flux<Stock> findByTicker(String ticker) {
-        return stockRepository.findStockByTicker(ticker);
+        return tickerCache.findByTicker(ticker);
     }
 
-    public Mono<Stock> saveOrUpdate(Stock stock) {
+    /**
+     * This method searches the stocks of a ticker matching the specified criteria. Without
+     * any criteria other than the ticker, all the stocks of the ticker are returned as before.
+     *
+     * @param query criteria of the search
+     * @return matching stocks, or only their requested fields if any
+     */
+    public Publisher<?> findByTicker(StockQuery query) {
+        if (query.getSize() != null && (query.getSize() < 1 || query.getSize() > maxPageSize)) {
+            return Flux.error(new InvalidQueryException(String.format("Page size must be between 1 and %d", maxPageSize)));
+        }
+
+        final List<String> fields = query.hasFields() ? new ArrayList<>(query.getFields()) : null;
+        if (fields != null) {
+            if (!StockSeriesSlice.FIELDS.containsAll(fields)) {
+                return Flux.error(new InvalidQueryException(String.format("Unknown fields in [%s]", fields)));
+            }
+            if (!fields.contains(StockSeriesSlice.STOCK_DATE)) {
+                fields.add(StockSeriesSlice.STOCK_DATE);
+            }
+        }
+        final Optional<StockSeriesSlice> slice = stockSeriesStore.find(query, fields);
+        if (slice.isPresent()) {
+            storeQueries.increment();
+            return Mono.just(slice.get());
+        }
+
+        if (query.isTickerOnly()) {
+            (tickerCache.isCached(query.getTicker()) ? cacheQueries : databaseQueries).increment();
+            return findByTicker(query.getTicker());
+        }
+        databaseQueries.increment();
+        return query.hasFields() ? stockRepository.findFieldsByQuery(query) : stockRepository.findByQuery(query);
+    }
+
+    /**
+     * This method computes the specified metrics over the stocks of a ticker in a single pass,
+     * the stocks being streamed from the database ordered by date and each of them being
+     * mapped to the metrics as of its date. The metrics only hold a fixed amount of state, so
+     * that nothing but the rows being streamed is kept in memory.
+     *
+     * @param ticker of the stocks
+     * @param from first date of the stocks, if any, the metrics starting over from it
+     * @param to last date of the stocks, if any
+     * @param metrics to be computed, e.g. sma20, ema12, vwap or vol
+     * @return metrics as of each stock, ordered by date
+     */
+    public Flux<StockAnalytics> analytics(String ticker, LocalDate from, LocalDate to, List<String> metrics) {
+        if (metrics == null || metrics.isEmpty()) {
+            return Flux.error(new InvalidQueryException("No metrics specified"));
+        }
+        return Flux.defer(() -> {
+            final Map<String, Indicators.Indicator> indicators = new LinkedHashMap<>();
+            metrics.forEach(metric -> indicators.put(metric, Indicators.of(metric)));
+
+            return stockRepository.findByQuery(new StockQuery(ticker, from, to, null, null, null))
+                    .map(stock -> {
+                        final Map<String, Double> values = new LinkedHashMap<>();
+                        indicators.forEach((metric, indicator) -> values.put(metric, indicator.next(stock)));
+                        return new StockAnalytics(stock.getStockDate(), stock.getClose(), stock.getVolume(), values);
+                    });
+        });
+    }
+
+    /**
+     * This method finds the quarterly summaries of a ticker, which are kept up to date by the
+     * database as the stocks change, rather than aggregating the stocks of the ticker.
+     *
+     * @param ticker of the stocks
+     * @return summary of each quarter of the ticker, ordered by date
+     */
+    public Flux<StockQuarter> findQuarters(String ticker) {
+        return stockQuarterRepository.findByTickerOrderByQuarterStart(ticker);
+    }
+
+    /**
+     * This method exports the stocks matching the specified criteria, ordered by ticker and
+     * date. The rows are read through a cursor and written straight into buffers of the
+     * specified factory, a few hundred rows per buffer, without being mapped to stocks, the
+     * cursor only fetching more rows as the buffers get written to the response.
+     *
+     * @param format of the export
+     * @param from first date of the stocks, if any
+     * @param to last date of the stocks, if any
+     * @param tickers of the stocks, all if none
+     * @param bufferFactory to allocate the buffers from, e.g. the pool of the response
+     * @return content of the export
+     */
+    public Flux<DataBuffer> export(ExportFormat format, LocalDate from, LocalDate to, List<String> tickers, DataBufferFactory bufferFactory) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return Flux.error(new InvalidQueryException(String.format("Date [%s] is after date [%s]", from, to)));
+        }
+        final Function<Row, String> toLine = format == ExportFormat.CSV ? StockExportWriter::toCsvLine : StockExportWriter::toJsonLine;
+        final Flux<String> lines = stockRepository.findAllRows(from, to, tickers, exportFetchSize, toLine);
+
+        return (format == ExportFormat.CSV ? lines.startWith(StockExportWriter.CSV_HEADER) : lines)
+                .buffer(exportRowsPerBuffer)
+                .map(chunk -> {
+                    final DataBuffer buffer = bufferFactory.allocateBuffer(chunk.size() * 160);
+                    chunk.forEach(line -> buffer.write(line, StandardCharsets.UTF_8));
+                    return buffer;
+                })
+                .doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+    }
 
-        Mono<Stock> matchingStock = stockRepository.findStockByTickerAndStockDate(stock.getTicker(), stock.getStockDate());
+    /**
+     * This method writes the stocks matching the specified criteria, ordered by ticker and
+     * date, as a {@link com.coding.challenge.utility.StockSnapshot} into a temp file, which is
+     * to be deleted by the caller once sent.
+     *
+     * @param from first date of the stocks, if any
+     * @param to last date of the stocks, if any
+     * @param tickers of the stocks, all if none
+     * @return temp file of the snapshot
+     */
+    public Mono<Path> exportSnapshot(LocalDate from, LocalDate to, List<String> tickers) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return Mono.error(new InvalidQueryException(String.format("Date [%s] is after date [%s]", from, to)));
+        }
+        return fileHelper.createTempFile("snapshot-", ".stks")
+                .flatMap(file -> Mono.using(
+                        () -> new StockSnapshotWriter(file.getParent()),
+                        writer -> stockRepository.findAllStocks(from, to, tickers, exportFetchSize)
+                                .publishOn(Schedulers.boundedElastic())
+                                .handle((stock, sink) -> {
+                                    try {
+                                        writer.add(stock);
+                                    } catch (IOException e) {
+                                        sink.error(e);
+                                    }
+                                })
+                                .then(Mono.fromCallable(() -> {
+                                    writer.writeTo(file);
+                                    log.info("Snapshot written : [Stocks={}] [File={}]", writer.size(), file);
+                                    return file;
+                                })),
+                        writer -> {
+                            try {
+                                writer.close();
+                            } catch (IOException e) {
+                                log.warn("Could not delete the columns of the snapshot", e);
+                            }
+                        })
+                        .doOnError(e -> fileHelper.deleteFile("snapshot", file.toFile())));
+    }
 
-        Mono<Stock> savedStock = matchingStock.flatMap(ms -> {
-            StockMapper.toStock(stock, ms);
-            return stockRepository.save(ms)
-                    .doOnSuccess(s -> log.info("Updated [Ticker={}] for [Date={}]", s.getTicker(), s.getStockDate()))
-                    .doOnError(e -> log.error(String.format("Could not save [Ticker=%s]", ms.getTicker()), e));
-        }).switchIfEmpty(stockRepository
-                .save(stock.setAsNew())
-                .doOnSuccess(s -> log.info("Saved [Ticker={}] for [Date={}]", s.getTicker(), s.getStockDate()))
+    public Mono<Stock> saveOrUpdate(Stock stock) {
+        return stockRepository.upsert(stock)
+                .doOnSuccess(u -> log.info("{} [Ticker={}] for [Date={}]", u.isInserted() ? "Saved" : "Updated", u.getStock().getTicker(), u.getStock().getStockDate()))
                 .doOnError(e -> log.error(String.format("Could not save [Ticker=%s]", stock.getTicker()), e))
-        );
+                .doOnSuccess(u -> publisher.publishEvent(StockChangedEvent.of(Collections.singletonList(stock))))
+                .map(u -> u.isInserted() ? u.getStock().setAsNew() : u.getStock());    // Same response as a save of a new stock.
+    }
+
+    /**
+     * This method upserts the stocks of the specified stream in batches, validating them with
+     * the same rules as the uploaded files. Each stock is acknowledged, in order, once its batch
+     * was upserted, the stream being consumed as fast as the batches get upserted.
+     *
+     * @param stocks to be upserted
+     * @return acknowledgement of each stock
+     */
+    public Flux<StockAck> upsert(Flux<com.coding.challenge.dto.Stock> stocks) {
+        return stocks
+                .index()
+                .map(indexedStock -> toLineResult(indexedStock.getT1(), indexedStock.getT2()))
+                .buffer(batchSize)
+                .concatMap(this::upsertBatch);
+    }
+
+    private LineResult toLineResult(final long index, final com.coding.challenge.dto.Stock stock) {
+        try {
+            return fileHelper.validateStock(new LineResult(index, StockMapper.toStock(stock)));
+        } catch (Exception e) {
+            return new LineResult(index, null, null, false, e);
+        }
+    }
+
+    /**
+     * This method upserts the valid stocks of the specified batch with a single batched
+     * statement within a transaction. Should the batch fail, its stocks are retried one by one
+     * so that the outcome of each stock can still be acknowledged.
+     */
+    private Flux<StockAck> upsertBatch(final List<LineResult> batch) {
+        final List<Stock> stocks = batch.stream()
+                .filter(LineResult::isInsertable)
+                .map(LineResult::getStock)
+                .collect(Collectors.toList());
+
+        if (stocks.isEmpty()) {
+            upsertedStocks.get(StockAck.Status.INVALID).increment(batch.size());
+            return Flux.fromIterable(batch).map(StockAck::invalid);
+        }
+
+        return stockRepository
+                .upsertAll(stocks)
+                .as(transactionalOperator::transactional)
+                .collectList()
+                .flatMapMany(upsertResults -> {
+                    final Iterator<UpsertResult> upsertResult = upsertResults.iterator();
+                    return Flux.fromIterable(batch).map(lineResult -> lineResult.isInsertable()
+                            ? StockAck.of(lineResult.getLineNumber(), upsertResult.next())
+                            : StockAck.invalid(lineResult));
+                })
+                .onErrorResume(ex -> {
+                    log.debug("Batch upsert failed, retrying its stocks one by one : [{}]", ex.getMessage());
+                    return Flux.fromIterable(batch).concatMap(this::upsertLine);
+                })
+                .collectList()
+                .doOnNext(acks -> {
+                    acks.forEach(ack -> upsertedStocks.get(ack.getStatus()).increment());
+                    publisher.publishEvent(StockChangedEvent.of(stocks));
+                })
+                .flatMapIterable(Function.identity());
+    }
 
-        return savedStock;
+    private Mono<StockAck> upsertLine(final LineResult lineResult) {
+        if (!lineResult.isInsertable()) {
+            return Mono.just(StockAck.invalid(lineResult));
+        }
+        return stockRepository
+                .upsert(lineResult.getStock())
+                .map(upsertResult -> StockAck.of(lineResult.getLineNumber(), upsertResult))
+                .onErrorResume(ex -> Mono.just(StockAck.of(lineResult, StockAck.Status.FAILED, ex)));
     }
 }
@@ -0,0 +1,90 @@
+package com.coding.challenge.service;
+
+import com.coding.challenge.dto.TickerCacheStats;
+import com.coding.challenge.event.StockChangedEvent;
+import com.coding.challenge.model.Stock;
+import com.coding.challenge.repository.StockRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * This class caches the stocks of each ticker, so that the searches of the most requested
+ * tickers do not hit the database. The cache is bounded by the total number of stocks it
+ * holds and its entries expire after a while, besides being invalidated as soon as stocks
+ * of their ticker are inserted or updated.
+ * <p>
+ * A ticker being loaded only once however many concurrent searches request it, and a load
+ * in progress being dropped from the cache when its ticker is invalidated, the cache never
+ * holds stocks read before the last change of their ticker.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TickerCache implements ApplicationListener<StockChangedEvent>, MeterBinder {
+
+    private final StockRepository stockRepository;
+
+    @Value("${application.cache.maxStocks}")
+    private long maxStocks;
+    @Value("${application.cache.ttlMillis}")
+    private long ttlMillis;
+
+    private AsyncCache<String, List<Stock>> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxStocks)
+                .weigher((String ticker, List<Stock> stocks) -> stocks.size() + 1)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * @param ticker to use for the search
+     * @return stocks of the ticker, loaded from the database if not cached
+     */
+    public Flux<Stock> findByTicker(final String ticker) {
+        return Mono.fromFuture(() -> cache.get(ticker, (key, executor) -> stockRepository.findStockByTicker(key).collectList().toFuture()))
+                .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * @param ticker to look up
+     * @return whether the stocks of the ticker are cached, or being loaded by a search
+     */
+    public boolean isCached(final String ticker) {
+        return cache.getIfPresent(ticker) != null;
+    }
+
+    public TickerCacheStats stats() {
+        return TickerCacheStats.of(cache.synchronous().estimatedSize(), cache.synchronous().stats());
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "tickers");
+    }
+
+    @Override
+    public void onApplicationEvent(final StockChangedEvent stockChangedEvent) {
+        log.debug("Invalidating [Tickers={}]", stockChangedEvent.getTickers());
+        cache.synchronous().invalidateAll(stockChangedEvent.getTickers());
+    }
+}
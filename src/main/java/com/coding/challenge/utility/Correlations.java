@@ -0,0 +1,130 @@
+package com.coding.challenge.utility;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class computes the pairwise correlations and covariances of aligned series, e.g. the
+ * weekly returns of every ticker over the same weeks, a missing value being NaN. Each pair
+ * only accounts for the weeks both its series have a value for.
+ * <p>
+ * The matrix being symmetric, only its upper tiles are computed, each tile pairing a block
+ * of series with another one, so that the series of a tile stay in the cache while their
+ * pairs are computed. The tiles are split among the threads of a fork/join pool.
+ */
+@Getter
+public class Correlations {
+
+    static final int TILE_SIZE = 32;
+
+    private final double[][] correlations;
+    private final double[][] covariances;
+
+    private Correlations(final int size) {
+        this.correlations = new double[size][size];
+        this.covariances = new double[size][size];
+    }
+
+    /**
+     * This method computes the correlation and covariance of each pair of the specified
+     * series, NaN when a pair has less than two values in common.
+     *
+     * @param series aligned values of each series, all of the same length
+     * @param pool to compute the tiles of the matrices on
+     * @return correlations and covariances, indexed as the series
+     */
+    public static Correlations compute(final double[][] series, final ForkJoinPool pool) {
+        final Correlations result = new Correlations(series.length);
+        final int blocks = (series.length + TILE_SIZE - 1) / TILE_SIZE;
+        final List<int[]> tiles = new ArrayList<>();
+        for (int i = 0; i < blocks; i++) {
+            for (int j = i; j < blocks; j++) {
+                tiles.add(new int[]{i * TILE_SIZE, j * TILE_SIZE});
+            }
+        }
+        pool.invoke(new TileTask(series, result, tiles, 0, tiles.size()));
+        return result;
+    }
+
+    private void computeTile(final double[][] series, final int rowStart, final int columnStart) {
+        final int rowEnd = Math.min(rowStart + TILE_SIZE, series.length);
+        final int columnEnd = Math.min(columnStart + TILE_SIZE, series.length);
+        for (int i = rowStart; i < rowEnd; i++) {
+            for (int j = Math.max(columnStart, i); j < columnEnd; j++) {
+                computePair(series[i], series[j], i, j);
+            }
+        }
+    }
+
+    private void computePair(final double[] x, final double[] y, final int i, final int j) {
+        int count = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumYY = 0;
+        double sumXY = 0;
+        for (int t = 0; t < x.length; t++) {
+            final double a = x[t];
+            final double b = y[t];
+            if (a == a && b == b) {     // Neither is NaN.
+                count++;
+                sumX += a;
+                sumY += b;
+                sumXX += a * a;
+                sumYY += b * b;
+                sumXY += a * b;
+            }
+        }
+
+        double covariance = Double.NaN;
+        double correlation = Double.NaN;
+        if (count > 1) {
+            final double coMoment = sumXY - sumX * sumY / count;
+            final double varianceX = sumXX - sumX * sumX / count;
+            final double varianceY = sumYY - sumY * sumY / count;
+            covariance = coMoment / (count - 1);
+            if (varianceX > 0 && varianceY > 0) {
+                correlation = Math.max(-1d, Math.min(1d, coMoment / Math.sqrt(varianceX * varianceY)));
+            }
+        }
+        covariances[i][j] = covariance;
+        covariances[j][i] = covariance;
+        correlations[i][j] = correlation;
+        correlations[j][i] = correlation;
+    }
+
+    /**
+     * Computes a range of tiles, splitting it in halves until a single tile is left.
+     */
+    private static class TileTask extends RecursiveAction {
+
+        private final double[][] series;
+        private final Correlations result;
+        private final List<int[]> tiles;
+        private final int from;
+        private final int to;
+
+        TileTask(final double[][] series, final Correlations result, final List<int[]> tiles, final int from, final int to) {
+            this.series = series;
+            this.result = result;
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                final int[] tile = tiles.get(from);
+                result.computeTile(series, tile[0], tile[1]);
+            } else if (to - from > 1) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(series, result, tiles, from, middle), new TileTask(series, result, tiles, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.dto.ValidationError;
+
+import java.io.Closeable;
+
+/**
+ * Destination of the validation errors of an upload that are not kept in memory.
+ */
+public interface ErrorSink extends Closeable {
+
+    /**
+     * @param lineNumber of the line in error
+     * @param validationError to be written
+     */
+    void write(Long lineNumber, ValidationError validationError);
+
+    /**
+     * Releases the resources of the sink without throwing.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,141 @@
+package com.coding.challenge.utility;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class represents a range of bytes of a file made of whole lines, so that the chunks
+ * of a file can be decoded and parsed independently of each other, e.g. on several threads.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class FileChunk {
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final int index;
+    private final long position;
+    private final long size;
+
+    /**
+     * This method splits the specified file into chunks of about the specified size, each
+     * chunk ending right after a line feed, or at the end of the file for the last one.
+     *
+     * @param channel of the file to be split
+     * @param chunkSize number of bytes after which a chunk ends at the next line feed
+     * @return chunks of the file, in order
+     * @throws IOException if the file cannot be read
+     */
+    public static List<FileChunk> split(final FileChannel channel, final int chunkSize) throws IOException {
+        final long length = channel.size();
+        final ByteBuffer window = ByteBuffer.allocate(8192);
+        final List<FileChunk> chunks = new ArrayList<>();
+
+        long start = 0;
+        while (start < length) {
+            final long end = nextLine(channel, start + chunkSize - 1, length, window);
+            chunks.add(new FileChunk(chunks.size(), start, end - start));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * @return position following the first line feed found from the specified position,
+     * or the length of the file if there is none
+     */
+    private static long nextLine(final FileChannel channel, long position, final long length, final ByteBuffer window) throws IOException {
+        while (position < length) {
+            window.clear();
+            final int read = channel.read(window, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == LINE_FEED) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return length;
+    }
+
+    /**
+     * This method memory-maps the chunk and decodes it as UTF-8. As no multi-byte UTF-8
+     * sequence contains a line feed, a chunk always holds whole characters. Malformed input
+     * is reported rather than replaced, so that no line gets ingested with altered text.
+     *
+     * @param channel of the file the chunk belongs to
+     * @return characters of the chunk
+     * @throws CharacterCodingException if the chunk is not valid UTF-8
+     * @throws IOException if the file cannot be mapped
+     */
+    public CharBuffer decode(final FileChannel channel) throws IOException {
+        return newDecoder().decode(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+    }
+
+    /**
+     * This method decodes the chunk line by line, e.g. once it is known not to be valid UTF-8
+     * as a whole, so that only its malformed lines have to be rejected. Lines end with
+     * <code>\n</code>, <code>\r\n</code> or <code>\r</code>, none of which can be part of a
+     * multi-byte UTF-8 sequence. The malformed bytes of a line are replaced, the number of
+     * the line being added to the specified set.
+     *
+     * @param channel of the file the chunk belongs to
+     * @param malformedLines numbers of the lines which are not valid UTF-8, relative to the
+     *                       first line of the chunk
+     * @return lines of the chunk, without their line terminators
+     * @throws IOException if the file cannot be mapped
+     */
+    public List<String> decodeLines(final FileChannel channel, final Set<Integer> malformedLines) throws IOException {
+        final ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        final CharsetDecoder decoder = newDecoder();
+        final List<String> lines = new ArrayList<>();
+        final int length = bytes.limit();
+
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && bytes.get(end) != LINE_FEED && bytes.get(end) != CARRIAGE_RETURN) {
+                end++;
+            }
+            final ByteBuffer line = bytes.duplicate();
+            line.limit(end);
+            line.position(start);
+            try {
+                lines.add(decoder.decode(line).toString());
+            } catch (CharacterCodingException e) {
+                malformedLines.add(lines.size());
+                line.position(start);
+                lines.add(StandardCharsets.UTF_8.decode(line).toString());
+            }
+            if (end + 1 < length && bytes.get(end) == CARRIAGE_RETURN && bytes.get(end + 1) == LINE_FEED) {
+                end++;
+            }
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+}
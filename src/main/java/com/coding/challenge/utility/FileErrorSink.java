@@ -0,0 +1,75 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.dto.ValidationError;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes validation errors as csv lines to a file, which is only created
+ * once the first error is written, and appended to if it exists, e.g. when a job resumes.
+ * Write failures are logged and the following errors are dropped, so that a full disk
+ * never fails an upload.
+ * <p>
+ * The file complements the validation errors kept in the result of an upload, one line per
+ * invalid field, whereas the {@link FileRejectSink} file has every rejected line as it was
+ * uploaded, to be fixed and uploaded again.
+ */
+@Slf4j
+public class FileErrorSink implements ErrorSink {
+
+    private final Path path;
+    private BufferedWriter writer;
+    private boolean failed;
+
+    public FileErrorSink(final Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public void write(final Long lineNumber, final ValidationError validationError) {
+        if (failed) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                final boolean created = Files.notExists(path);
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                if (created) {
+                    writer.write("line_number,field_name,message");
+                    writer.newLine();
+                }
+            }
+            writer.write(String.valueOf(lineNumber));
+            writer.write(',');
+            writer.write(validationError.getFieldName());
+            writer.write(",\"");
+            writer.write(validationError.getMessage().replace("\"", "\"\""));
+            writer.write('"');
+            writer.newLine();
+        } catch (IOException ex) {
+            log.error(String.format("Could not write validation errors to [File=%s]", path), ex);
+            failed = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                log.error(String.format("Could not close [File=%s]", path), ex);
+            }
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
@@ -1,31 +1,63 @@
 package com.coding.challenge.utility;
 
 import com.coding.challenge.dto.LineResult;
+import com.coding.challenge.dto.MergeResult;
 import com.coding.challenge.dto.UploadResult;
+import com.coding.challenge.dto.UploadResultAccumulator;
 import com.coding.challenge.dto.ValidationError;
-import com.coding.challenge.event.UploadProgressEvent;
+import com.coding.challenge.event.StockChangedEvent;
+import com.coding.challenge.event.UploadProgressReporter;
 import com.coding.challenge.exception.UnparseableFileException;
+import com.coding.challenge.model.IngestCheckpoint;
 import com.coding.challenge.model.Stock;
+import com.coding.challenge.repository.IngestCheckpointRepository;
 import com.coding.challenge.repository.StockRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
 import reactor.core.scheduler.Schedulers;
 import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
+import javax.annotation.PostConstruct;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.BaseStream;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * This class contains helper methods to deal with the uploaded
@@ -36,8 +68,75 @@ import java.util.stream.BaseStream;
 @RequiredArgsConstructor
 public class FileHelper {
 
+    private static final StringDecoder LINE_DECODER = StringDecoder.allMimeTypes();
+
+    /**
+     * One line in that many, i.e. the lines whose number is a multiple of it, is timed while
+     * mapped and validated, a power of two.
+     */
+    static final int SAMPLED_LINES = 64;
+
     private final StockRepository stockRepository;
+    private final IngestCheckpointRepository ingestCheckpointRepository;
     private final ApplicationEventPublisher publisher;
+    private final TransactionalOperator transactionalOperator;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${application.ingest.batchSize}")
+    private int batchSize;
+    @Value("${application.ingest.maxValidationErrors}")
+    private int maxValidationErrors;
+    @Value("${application.ingest.chunkSize}")
+    private int chunkSize;
+    @Value("${application.ingest.errorDir}")
+    private String errorDir;
+    @Value("${application.progress.rowStep}")
+    private long progressRowStep;
+    @Value("${application.progress.intervalMillis}")
+    private long progressIntervalMillis;
+
+    private Timer mapTimer;
+    private Timer validateTimer;
+    private Timer insertTimer;
+    private Timer stagingTimer;
+    private Timer mergeTimer;
+    private Counter ingestedRows;
+    private Counter rejectedRows;
+    private Counter unchangedRows;
+    private Counter conflictedRows;
+
+    /**
+     * Registers the meters of the ingest: The map and validate stages are timed per line on a
+     * sample of the lines, as timing each of them would cost as much as validating it, while
+     * the inserts are timed per batch. The rows are counted per batch, so that the rows per
+     * second are derived from the counters rather than from the timers.
+     */
+    @PostConstruct
+    public void initMetrics() {
+        mapTimer = stageTimer("map");
+        validateTimer = stageTimer("validate");
+        insertTimer = stageTimer("insert");
+        stagingTimer = stageTimer("staging");
+        mergeTimer = stageTimer("merge");
+        ingestedRows = rowCounter("ingested");
+        rejectedRows = rowCounter("rejected");
+        unchangedRows = rowCounter("unchanged");
+        conflictedRows = rowCounter("conflicted");
+    }
+
+    private Timer stageTimer(final String stage) {
+        return Timer.builder("stock.ingest.stage")
+                .description("Time spent in a stage of the ingest, per sampled line to map and validate, per batch to insert or stage, per upload to merge")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private Counter rowCounter(final String outcome) {
+        return Counter.builder("stock.ingest.rows")
+                .description("Rows of the uploads, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 
     /**
      * This method is used to create a new temp file using specified prefix and suffix: As the
@@ -58,106 +157,566 @@ public class FileHelper {
     }
 
     /**
-     * This method is used to process the uploaded file line by line.
+     * This method is used to delete an uploaded file once it is no longer needed.
      *
      * @param requestId unique identifier of the upload
+     * @param file to be deleted
+     */
+    public void deleteFile(final String requestId, final File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException ex) {
+            log.warn(String.format("[RequestId=%s] Could not delete [File=%s]", requestId, file), ex);
+        }
+    }
+
+    /**
+     * This method is used to process the uploaded file line by line, from the line following
+     * the specified checkpoint: The checkpoint moves forward within the transaction of each
+     * batch inserted, so that an interrupted ingest resumes from its last batch. Nothing
+     * happens until the returned <code>Mono</code> is subscribed to.
+     *
+     * @param checkpoint of the upload
      * @param file to be processed
+     * @return result of the upload
      */
-    public void processFile(final String requestId, final File file) {
-        ingestFile(requestId, file).subscribe(r -> log.info("[RequestId={}] Final Result => [{}]", requestId, r));
+    public Mono<UploadResult> ingestFile(final IngestCheckpoint checkpoint, final File file) {
+        return Mono.defer(() -> {
+            if (checkpoint.getLastLine() > 0) {
+                log.info("[RequestId={}] Resuming ingest : [LastLine={}] [Offset={}]",
+                        checkpoint.getRequestId(), checkpoint.getLastLine(), checkpoint.getByteOffset());
+            }
+            final Checkpointer checkpointer = new Checkpointer(checkpoint);
+            final Set<Long> malformedLines = ConcurrentHashMap.newKeySet();
+            return ingest(checkpoint.getRequestId(), file, checkpoint,
+                    () -> lineResults(indexedLines(file, checkpointer, malformedLines), checkpoint.getLastLine(), malformedLines),
+                    stream -> insertStock(stream, checkpointer), Mono::just);
+        });
     }
 
-    private Mono<UploadResult> ingestFile(final String requestId, final File file) {
+    /**
+     * This method is used to process the uploaded file using all the cores: The file is
+     * memory-mapped and split into chunks of whole lines, which are parsed and validated in
+     * parallel, while their lines are inserted in order. The checkpoint only records the last
+     * line inserted, an interrupted ingest being resumed by {@link #ingestFile}. Nothing
+     * happens until the returned <code>Mono</code> is subscribed to.
+     *
+     * @param checkpoint of the upload, which did not ingest anything yet
+     * @param file to be processed
+     * @return result of the upload
+     */
+    public Mono<UploadResult> ingestFileInParallel(final IngestCheckpoint checkpoint, final File file) {
+        return Mono.defer(() -> {
+            final Checkpointer checkpointer = new Checkpointer(checkpoint);
+            return ingest(checkpoint.getRequestId(), file, checkpoint, () -> lineResultsInParallel(file),
+                    stream -> insertStock(stream, checkpointer), Mono::just);
+        });
+    }
 
-        publisher.publishEvent(new UploadProgressEvent(requestId, Boolean.FALSE, "started"));
+    /**
+     * This method is used to process the uploaded content line by line as its bytes arrive,
+     * i.e. without storing it in a file first. Nothing happens until the returned
+     * <code>Mono</code> is subscribed to.
+     *
+     * @param requestId unique identifier of the upload
+     * @param content to be processed
+     * @return result of the upload
+     */
+    public Mono<UploadResult> ingestContent(final String requestId, final Flux<DataBuffer> content) {
+        return ingest(requestId, null, null, () -> lineResults(indexedLines(content), 0, Collections.emptySet()),
+                stream -> insertStock(stream, null), Mono::just);
+    }
 
-        return indexedLines(file)
-                .skip(1)    // Ignore the header line.
-                .map(this::mapStock)
-                .map(this::validateStock)
-                .transform(this::insertStock)
-                .transform(this::handleException)
-                .reduce(new UploadResult(file), (fileResult, lineResult) -> {
+    /**
+     * This method is used to process an uploaded {@link StockSnapshot}: Its stocks are read
+     * straight from the memory-mapped columns of the file, without any parsing, and are then
+     * validated and inserted like the lines of a csv file, the row of a stock being its line
+     * number, from the row following the specified checkpoint. Nothing happens until the
+     * returned <code>Mono</code> is subscribed to.
+     *
+     * @param checkpoint of the upload
+     * @param file of the snapshot to be processed
+     * @return result of the upload
+     */
+    public Mono<UploadResult> ingestSnapshot(final IngestCheckpoint checkpoint, final File file) {
+        return Mono.defer(() -> {
+            final Checkpointer checkpointer = new Checkpointer(checkpoint);
+            final int firstRow = (int) checkpoint.getLastLine();
+            return ingest(checkpoint.getRequestId(), file, checkpoint, () -> Flux.using(
+                    () -> StockSnapshotReader.open(file.toPath()),
+                    reader -> Flux.range(firstRow, Math.max(reader.size() - firstRow, 0))
+                            .map(row -> validateStock(new LineResult(row + 1L, reader.getStock(row)))),
+                    this::closeReader),
+                    stream -> insertStock(stream, checkpointer), Mono::just);
+        });
+    }
 
-                    publisher.publishEvent(new UploadProgressEvent(requestId, Boolean.FALSE, fileResult.toString()));
+    /**
+     * This method is used to merge the uploaded file into the stocks: Its valid lines are
+     * loaded into the staging table in batches and then merged all at once, so that only the
+     * new and the changed stocks get written, the result telling how many stocks were
+     * inserted, updated or left unchanged. The staged lines are deleted whatever the outcome.
+     * As the staging table is unlogged, i.e. emptied by a crash, an interrupted merge starts
+     * over from the first line, once the lines it might have staged are deleted. Nothing
+     * happens until the returned <code>Mono</code> is subscribed to.
+     *
+     * @param requestId unique identifier of the upload
+     * @param file to be processed
+     * @return result of the upload
+     */
+    public Mono<UploadResult> mergeFile(final String requestId, final File file) {
+        final Set<Long> malformedLines = ConcurrentHashMap.newKeySet();
+        return Mono.usingWhen(
+                stockRepository.deleteStaged(requestId).thenReturn(requestId),
+                id -> ingest(id, file, null, () -> lineResults(indexedLines(file, new Checkpointer(null), malformedLines), 0, malformedLines),
+                        stream -> stageStock(id, stream), accumulator -> merge(id, accumulator)),
+                stockRepository::deleteStaged,
+                (id, e) -> stockRepository.deleteStaged(id),
+                stockRepository::deleteStaged);
+    }
 
-                            return fileResult.accumulate(
-                                    lineResult.getValidationErrors(),
-                                    lineResult.isInsertSucceed() != null && lineResult.isInsertSucceed(),
-                                    lineResult.getException()
-                            );
+    /**
+     * This method runs the lines of an upload through the specified write stage, e.g. their
+     * insert, accumulating their results, and then through the specified final stage. The
+     * counters of a resumed upload start from the ones of its checkpoint.
+     */
+    private Mono<UploadResult> ingest(final String requestId, final File file, final IngestCheckpoint checkpoint,
+                                      final Supplier<Flux<LineResult>> lineResults,
+                                      final Function<Flux<LineResult>, Flux<LineResult>> write,
+                                      final Function<UploadResultAccumulator, Mono<UploadResultAccumulator>> complete) {
+        return Mono.defer(() -> {
 
-                        }
-                ).doOnTerminate(() -> publisher.publishEvent(new UploadProgressEvent(requestId, Boolean.TRUE, "completed")));
+            final Timer.Sample sample = Timer.start(meterRegistry);
+            final ErrorSink errorSink = new FileErrorSink(errorsPath(requestId));
+            final FileRejectSink rejectSink = new FileRejectSink(rejectsPath(requestId));
+            final UploadResultAccumulator accumulator = new UploadResultAccumulator(file, maxValidationErrors, errorSink);
+            final UploadProgressReporter reporter = new UploadProgressReporter(publisher, requestId, progressRowStep, progressIntervalMillis);
+
+            if (checkpoint != null) {
+                accumulator.resumed(checkpoint.getRowsRead(), checkpoint.getRowsIngested(), checkpoint.getErrorRows());
+            }
+            reporter.started(accumulator);
+
+            return lineResults.get()
+                    .transform(this::handleException)
+                    .transform(write)
+                    .doOnNext(rejectSink::write)
+                    .reduce(accumulator, (a, lineResult) -> reporter.progress(a.accumulate(lineResult)))
+                    .flatMap(complete)
+                    .map(UploadResultAccumulator::toUploadResult)
+                    .doOnSuccess(r -> {
+                        sample.stop(uploadTimer(r.getStatus()));
+                        reporter.completed(accumulator);
+                    })
+                    .doOnError(e -> {
+                        sample.stop(uploadTimer(UploadResult.Status.ERROR));
+                        reporter.failed(accumulator);
+                    })
+                    .doOnCancel(() -> reporter.interrupted(accumulator))
+                    .doFinally(s -> {
+                        errorSink.close();
+                        rejectSink.close();
+                    });
+        }).doOnNext(r -> log.info("[RequestId={}] Final Result => [{}]", requestId, r));
+    }
+
+    /**
+     * @param requestId unique identifier of the upload
+     * @return path of the csv file of the validation errors of the upload beyond the ones kept
+     * in its result, which only exists once such an error was written
+     */
+    public Path errorsPath(final String requestId) {
+        return Paths.get(errorDir, requestId + "-errors.csv");
+    }
+
+    /**
+     * @param requestId unique identifier of the upload
+     * @return path of the csv file of the lines of the upload that were rejected, which only
+     * exists once a line was rejected
+     */
+    public Path rejectsPath(final String requestId) {
+        return Paths.get(errorDir, requestId + "-rejects.csv");
+    }
+
+    private Timer uploadTimer(final UploadResult.Status status) {
+        return Timer.builder("stock.ingest.upload")
+                .description("Time taken by the ingest of an upload")
+                .tag("status", status.name())
+                .register(meterRegistry);
+    }
+
+    /**
+     * This method maps and validates the lines read, but for the ones which are not valid
+     * UTF-8, which are rejected as they are.
+     */
+    private Flux<LineResult> lineResults(final Flux<Tuple2<Long, String>> indexedLines, final long lastLine, final Set<Long> malformedLines) {
+        final StockCsvParser parser = new StockCsvParser();
+        return indexedLines
+                .filter(indexedLine -> indexedLine.getT1() > lastLine)    // Ignore the header line and the lines already ingested.
+                .filter(indexedLine -> !indexedLine.getT2().isEmpty())
+                .map(indexedLine -> malformedLines.remove(indexedLine.getT1())
+                        ? malformedLine(indexedLine)
+                        : validateStock(mapStock(parser, indexedLine)));
+    }
+
+    private static LineResult malformedLine(final Tuple2<Long, String> indexedLine) {
+        return new LineResult(indexedLine.getT1(), null, malformedLineErrors(), null, null, indexedLine.getT2());
+    }
+
+    private static List<ValidationError> malformedLineErrors() {
+        return Collections.singletonList(new ValidationError("Line", "Line must be valid UTF-8."));
+    }
+
+    /**
+     * This method parses and validates the chunks of the file on the parallel scheduler,
+     * while emitting their lines in order: The line numbers within a chunk being relative
+     * to its first line, they are made absolute once the line counts of all the preceding
+     * chunks are known.
+     */
+    private Flux<LineResult> lineResultsInParallel(final File file) {
+        return Flux.using(
+                () -> FileChannel.open(file.toPath(), StandardOpenOption.READ),
+                channel -> {
+                    final long[] firstLineNumber = {0L};
+                    return Mono.fromCallable(() -> FileChunk.split(channel, chunkSize))
+                            .flatMapMany(Flux::fromIterable)
+                            .flatMapSequential(chunk -> Mono.fromCallable(() -> parseChunk(channel, chunk))
+                                    .subscribeOn(Schedulers.parallel()), Schedulers.DEFAULT_POOL_SIZE, 1)
+                            .concatMap(parsedChunk -> {
+                                final Flux<LineResult> chunkResults = parsedChunk.lineResults(firstLineNumber[0]);
+                                firstLineNumber[0] += parsedChunk.lineCount;
+                                return chunkResults;
+                            });
+                },
+                this::closeChannel
+        );
+    }
+
+    /**
+     * This method parses and validates the lines of a chunk, up to the first one that cannot
+     * be parsed. A chunk which is not valid UTF-8 is decoded again line by line, so that only
+     * its malformed lines are rejected, as when the file is read line by line.
+     */
+    private ParsedChunk parseChunk(final FileChannel channel, final FileChunk chunk) throws IOException {
+        final StockCsvParser parser = new StockCsvParser();
+        final ParsedChunk parsedChunk = new ParsedChunk();
+        final CharBuffer chars;
+        try {
+            chars = chunk.decode(channel);
+        } catch (CharacterCodingException e) {
+            return parseChunkLines(channel, chunk, parser, parsedChunk);
+        }
+        final int length = chars.length();
+
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && chars.get(end) != '\n' && chars.get(end) != '\r') {
+                end++;
+            }
+            final int lineNumber = parsedChunk.lineCount++;
+            if (end > start && (chunk.getIndex() > 0 || lineNumber > 0)    // Ignore the empty and header lines.
+                    && !parseLine(parser, parsedChunk, lineNumber, chars, start, end)) {
+                break;
+            }
+            if (end + 1 < length && chars.get(end) == '\r' && chars.get(end + 1) == '\n') {
+                end++;
+            }
+            start = end + 1;
+        }
+        return parsedChunk;
     }
 
-    private Flux<Tuple2<Long, String>> indexedLines(final File file) {
+    private ParsedChunk parseChunkLines(final FileChannel channel, final FileChunk chunk, final StockCsvParser parser,
+                                        final ParsedChunk parsedChunk) throws IOException {
+        final Set<Integer> malformedLines = new HashSet<>();
+        for (String line : chunk.decodeLines(channel, malformedLines)) {
+            final int lineNumber = parsedChunk.lineCount++;
+            if (line.isEmpty() || (chunk.getIndex() == 0 && lineNumber == 0)) {    // Ignore the empty and header lines.
+                continue;
+            }
+            if (malformedLines.contains(lineNumber)) {
+                parsedChunk.add(lineNumber, null, malformedLineErrors(), line);
+            } else if (!parseLine(parser, parsedChunk, lineNumber, line, 0, line.length())) {
+                break;
+            }
+        }
+        return parsedChunk;
+    }
+
+    /**
+     * @return whether the line could be parsed, the chunk being failed otherwise
+     */
+    private boolean parseLine(final StockCsvParser parser, final ParsedChunk parsedChunk, final int lineNumber,
+                              final CharSequence chars, final int start, final int end) {
+        try {
+            final Stock stock;
+            final List<ValidationError> errors;
+            if (isSampled(lineNumber)) {
+                final long mapStart = System.nanoTime();
+                stock = StockMapper.toStock(parser.parse(chars, start, end));
+                final long validateStart = System.nanoTime();
+                errors = validate(stock);
+                mapTimer.record(validateStart - mapStart, TimeUnit.NANOSECONDS);
+                validateTimer.record(System.nanoTime() - validateStart, TimeUnit.NANOSECONDS);
+            } else {
+                stock = StockMapper.toStock(parser.parse(chars, start, end));
+                errors = validate(stock);
+            }
+            parsedChunk.add(lineNumber, stock, errors, errors.isEmpty() ? null : chars.subSequence(start, end).toString());
+            return true;
+        } catch (Exception e) {
+            parsedChunk.failure(lineNumber, chars.subSequence(start, end).toString(), e);
+            return false;
+        }
+    }
+
+    private void closeChannel(final FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            log.warn("Could not close file channel", ex);
+        }
+    }
+
+    private void closeReader(final Closeable reader) {
+        try {
+            reader.close();
+        } catch (IOException ex) {
+            log.warn("Could not close file reader", ex);
+        }
+    }
+
+    /**
+     * This method reads the lines of the file from the offset of the checkpoint, if any,
+     * recording the offset following each line read until it is checkpointed, so that the
+     * offsets held in memory are the ones of the lines in flight only. The numbers of the
+     * lines which are not valid UTF-8 are recorded as well, until they are rejected.
+     */
+    private Flux<Tuple2<Long, String>> indexedLines(final File file, final Checkpointer checkpointer, final Set<Long> malformedLines) {
+        final boolean tracked = checkpointer.committed != null;
+        final long offset = tracked ? checkpointer.committed.getByteOffset() : 0;
+        final long firstLineNumber = offset > 0 ? checkpointer.committed.getLastLine() + 1 : 0;
         return Flux.using(
-                () -> Files.lines(file.toPath()),
-                lines -> Flux.fromStream(lines).index(),
-                BaseStream::close
+                () -> LineReader.open(file.toPath(), offset),
+                reader -> Flux.generate(() -> firstLineNumber, (Long lineNumber, SynchronousSink<Tuple2<Long, String>> sink) -> {
+                    try {
+                        final String line = reader.readLine();
+                        if (line == null) {
+                            sink.complete();
+                        } else {
+                            if (tracked) {
+                                checkpointer.offsets.put(lineNumber, reader.getOffset());
+                            }
+                            if (reader.isMalformed()) {
+                                malformedLines.add(lineNumber);
+                            }
+                            sink.next(Tuples.of(lineNumber, line));
+                        }
+                    } catch (IOException ex) {
+                        sink.error(ex);
+                    }
+                    return lineNumber + 1;
+                }),
+                this::closeReader
         );
     }
 
-    private LineResult mapStock(Tuple2<Long, String> indexedLine) {
+    private Flux<Tuple2<Long, String>> indexedLines(final Flux<DataBuffer> content) {
+        return LINE_DECODER
+                .decode(content, ResolvableType.forClass(String.class), null, null)
+                .index();
+    }
+
+    /**
+     * Maps a line to its stock, package-private so that it can be benchmarked on its own.
+     */
+    LineResult mapStock(final StockCsvParser parser, final Tuple2<Long, String> indexedLine) {
+        final boolean sampled = isSampled(indexedLine.getT1());
+        final long start = sampled ? System.nanoTime() : 0;
         try {
-            CSVParser csvParser = CSVParser.parse(
-                    indexedLine.getT2(),
-                    CSVFormat.DEFAULT.withHeader(
-                            StockMapper.QUARTER,
-                            StockMapper.STOCK,
-                            StockMapper.DATE,
-                            StockMapper.OPEN,
-                            StockMapper.HIGH,
-                            StockMapper.LOW,
-                            StockMapper.CLOSE,
-                            StockMapper.VOLUME,
-                            StockMapper.PERCENT_CHANGE_PRICE,
-                            StockMapper.PERCENT_CHANGE_VOLUME_OVER_LAST_WK,
-                            StockMapper.PREVIOUS_WEEKS_VOLUME,
-                            StockMapper.NEXT_WEEKS_OPEN,
-                            StockMapper.NEXT_WEEKS_CLOSE,
-                            StockMapper.PERCENT_CHANGE_NEXT_WEEKS_PRICE,
-                            StockMapper.DAYS_TO_NEXT_DIVIDEND,
-                            StockMapper.PERCENT_RETURN_NEXT_DIVIDEND
-                    ).withTrim()
-            );
-            return csvParser
-                    .getRecords()
-                    .stream()
-                    .findFirst()
-                    .map(r -> new LineResult(indexedLine.getT1(), StockMapper.toStock(r)))
-                    .orElse(null);
+            return new LineResult(indexedLine.getT1(), StockMapper.toStock(parser.parse(indexedLine.getT2())), null, null, null, indexedLine.getT2());
         } catch (Exception e) {
-            throw new UnparseableFileException(indexedLine.getT1(), e);
+            throw new UnparseableFileException(indexedLine.getT1(), indexedLine.getT2(), e);
+        } finally {
+            if (sampled) {
+                mapTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static boolean isSampled(final long lineNumber) {
+        return (lineNumber & (SAMPLED_LINES - 1)) == 0;
+    }
+
+    private Flux<LineResult> insertStock(final Flux<LineResult> stream, final Checkpointer checkpointer) {
+        return stream.buffer(batchSize).concatMap(batch -> insertBatch(batch, checkpointer));
+    }
+
+    /**
+     * This method inserts the valid lines of the specified batch with a single batched
+     * statement within a transaction, along with the checkpoint following the batch if any.
+     * Should the batch fail, e.g. because of a duplicate (ticker, date), its lines are retried
+     * one by one so that the outcome of each line can still be reported, each within its own
+     * savepoint of a new transaction along with the checkpoint: Should the ingest be
+     * interrupted, the lines are either inserted and checkpointed, or neither.
+     *
+     * @param batch of lines to be inserted
+     * @param checkpointer of the ingest, null if it cannot be resumed
+     * @return result of each line, in the same order as the batch
+     */
+    private Flux<LineResult> insertBatch(final List<LineResult> batch, final Checkpointer checkpointer) {
+        final List<Stock> stocks = batch.stream()
+                .filter(LineResult::isInsertable)
+                .map(LineResult::getStock)
+                .collect(Collectors.toList());
+
+        if (stocks.isEmpty()) {
+            rejectedRows.increment(batch.size());
+            return checkpoint(checkpointer, batch)
+                    .doOnNext(lineResults -> commit(checkpointer))
+                    .flatMapIterable(Function.identity());
         }
+
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        return stockRepository
+                .insertAll(stocks)
+                .thenMany(Flux.fromIterable(batch).map(lineResult -> lineResult.isInsertable()
+                        ? new LineResult(lineResult.getLineNumber(), lineResult.getStock(), null, true, null)
+                        : lineResult))
+                .collectList()
+                .flatMap(lineResults -> checkpoint(checkpointer, lineResults))
+                .as(transactionalOperator::transactional)
+                .onErrorResume(ex -> {
+                    log.debug("Batch insert failed, retrying its lines one by one : [{}]", ex.getMessage());
+                    stocks.forEach(stock -> stock.setId(null));    // Ids of the rolled back rows are void.
+                    return Flux.fromIterable(batch)
+                            .concatMap(this::insertStock)
+                            .collectList()
+                            .flatMap(lineResults -> checkpoint(checkpointer, lineResults))
+                            .as(transactionalOperator::transactional);
+                })
+                .doOnNext(lineResults -> {
+                    commit(checkpointer);
+                    sample.stop(insertTimer);
+                    countRows(lineResults);
+                    publisher.publishEvent(StockChangedEvent.of(stocks));
+                })
+                .flatMapIterable(Function.identity());
     }
 
-    private Flux<LineResult> insertStock(final Flux<LineResult> stream) {
-        return stream.map(this::insertStock).flatMap(lineResultMono -> lineResultMono);
+    /**
+     * This method moves the checkpoint of the ingest, if any, past the specified lines. The new
+     * checkpoint is only committed once the transaction it is written in is, so that a batch
+     * retried after a rollback moves the checkpoint from where it was.
+     */
+    private Mono<List<LineResult>> checkpoint(final Checkpointer checkpointer, final List<LineResult> lineResults) {
+        if (checkpointer == null) {
+            return Mono.just(lineResults);
+        }
+        final IngestCheckpoint next = checkpointer.next(lineResults);
+        return ingestCheckpointRepository
+                .advance(next.getRequestId(), next.getLastLine(), next.getByteOffset(), next.getRowsRead(), next.getRowsIngested(), next.getErrorRows())
+                .thenReturn(lineResults);
+    }
+
+    private static void commit(final Checkpointer checkpointer) {
+        if (checkpointer != null) {
+            checkpointer.commit();
+        }
+    }
+
+    private void countRows(final List<LineResult> lineResults) {
+        final long ingested = lineResults.stream().filter(lineResult -> Boolean.TRUE.equals(lineResult.isInsertSucceed())).count();
+        ingestedRows.increment(ingested);
+        rejectedRows.increment(lineResults.size() - ingested);
+    }
+
+    private Flux<LineResult> stageStock(final String requestId, final Flux<LineResult> stream) {
+        return stream.buffer(batchSize).concatMap(batch -> {
+            final Map<Long, Stock> stocks = new LinkedHashMap<>();
+            batch.stream()
+                    .filter(LineResult::isInsertable)
+                    .forEach(lineResult -> stocks.put(lineResult.getLineNumber(), lineResult.getStock()));
+
+            final Timer.Sample sample = Timer.start(meterRegistry);
+            return stockRepository.stageAll(requestId, stocks)
+                    .then(Mono.fromCallable(() -> {
+                        sample.stop(stagingTimer);
+                        rejectedRows.increment(batch.size() - stocks.size());
+                        return batch.stream()
+                                .map(lineResult -> lineResult.isInsertable()
+                                        ? new LineResult(lineResult.getLineNumber(), lineResult.getStock(), null, true, null)
+                                        : lineResult)
+                                .collect(Collectors.toList());
+                    }))
+                    .flatMapIterable(Function.identity());
+        });
+    }
+
+    /**
+     * This method merges the staged lines into the stocks, once all of them are staged.
+     */
+    private Mono<UploadResultAccumulator> merge(final String requestId, final UploadResultAccumulator accumulator) {
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        return stockRepository.merge(requestId)
+                .as(transactionalOperator::transactional)
+                .doOnNext(mergeResult -> {
+                    sample.stop(mergeTimer);
+                    log.info("[RequestId={}] Staged stocks merged : [{}]", requestId, mergeResult);
+                    countRows(mergeResult);
+                    if (!mergeResult.getChangedTickers().isEmpty()) {
+                        publisher.publishEvent(new StockChangedEvent(mergeResult.getChangedTickers()));
+                    }
+                })
+                .map(accumulator::merged);
+    }
+
+    private void countRows(final MergeResult mergeResult) {
+        ingestedRows.increment(mergeResult.getInserted() + mergeResult.getUpdated());
+        unchangedRows.increment(mergeResult.getUnchanged());
+        conflictedRows.increment(mergeResult.getConflicted());
     }
 
     private Mono<LineResult> insertStock(LineResult lineResult) {
-        if (lineResult.hasValidationError()) {
+        if (!lineResult.isInsertable()) {
             return Mono.just(lineResult);
         } else {
             return stockRepository
-                    .save(lineResult.getStock())
+                    .insertWithinSavepoint(lineResult.getStock())
                     .flatMap(savedStock -> Mono.just(new LineResult(
                             lineResult.getLineNumber(),
                             savedStock,
                             null,
                             savedStock.getId() != null && savedStock.getId() > 0L,
                             null
+                    )))
+                    .onErrorResume(ex -> Mono.just(new LineResult(
+                            lineResult.getLineNumber(),
+                            lineResult.getStock(),
+                            null,
+                            false,
+                            ex,
+                            lineResult.getLine()
                     )));
         }
     }
 
     public LineResult validateStock(final LineResult lineResult) {
+        final List<ValidationError> errors;
+        if (isSampled(lineResult.getLineNumber())) {
+            final long start = System.nanoTime();
+            errors = validate(lineResult.getStock());
+            validateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } else {
+            errors = validate(lineResult.getStock());
+        }
+        return new LineResult(lineResult.getLineNumber(), lineResult.getStock(), errors, null, null, lineResult.getLine());
+    }
+
+    private List<ValidationError> validate(final Stock stock) {
 
         final List<ValidationError> errors = new ArrayList<>();
-        final Long lineNumber = lineResult.getLineNumber();
-        final Stock stock = lineResult.getStock();
 
         if (stock.getQuarter() <= 0) {
             errors.add(new ValidationError("Quarter", "Quarter must be a positive, non-zero value."));
@@ -171,10 +730,97 @@ public class FileHelper {
             errors.add(new ValidationError("Date", "Date must be specified."));
         }
 
-        return new LineResult(lineNumber, stock, errors);
+        return errors;
     }
 
+    /**
+     * This method turns a failure into the last line of the stream, before the lines are
+     * inserted, so that the lines preceding an unparseable one still get inserted.
+     */
     private Flux<LineResult> handleException(final Flux<LineResult> stream) {
         return stream.onErrorResume(ex -> Flux.just(new LineResult(ex)));
     }
+
+    /**
+     * Checkpoint of an ingest as of its last committed batch, along with the offsets following
+     * the lines read since, so that the checkpoint of a batch knows where its last line ends.
+     */
+    private static class Checkpointer {
+
+        private final NavigableMap<Long, Long> offsets = new ConcurrentSkipListMap<>();
+        private volatile IngestCheckpoint committed;
+        private volatile IngestCheckpoint pending;
+
+        private Checkpointer(final IngestCheckpoint checkpoint) {
+            this.committed = checkpoint;
+        }
+
+        private IngestCheckpoint next(final List<LineResult> lineResults) {
+            final IngestCheckpoint current = committed;
+            long lastLine = current.getLastLine();
+            long ingested = 0;
+            long errors = 0;
+            for (LineResult lineResult : lineResults) {
+                lastLine = Math.max(lastLine, lineResult.getLineNumber());
+                if (Boolean.TRUE.equals(lineResult.isInsertSucceed())) {
+                    ingested++;
+                }
+                if (lineResult.isRejected()) {
+                    errors++;
+                }
+            }
+            final Map.Entry<Long, Long> offset = offsets.floorEntry(lastLine);
+            pending = new IngestCheckpoint(current.getRequestId(), current.getInstanceId(), current.getFileName(), current.getFilePath(), current.getMode(),
+                    lastLine, offset == null ? current.getByteOffset() : offset.getValue(),
+                    current.getRowsRead() + lineResults.size(), current.getRowsIngested() + ingested, current.getErrorRows() + errors,
+                    Instant.now());
+            return pending;
+        }
+
+        private void commit() {
+            committed = pending;
+            offsets.headMap(committed.getLastLine(), true).clear();
+        }
+    }
+
+    /**
+     * Lines of a chunk once parsed and validated, numbered from the first line of the chunk,
+     * up to the first line that could not be parsed if any.
+     */
+    private static class ParsedChunk {
+
+        private final List<Integer> lineNumbers = new ArrayList<>();
+        private final List<Stock> stocks = new ArrayList<>();
+        private final List<List<ValidationError>> validationErrors = new ArrayList<>();
+        private final List<String> lines = new ArrayList<>();
+        private int lineCount;
+        private int failedLineNumber;
+        private String failedLine;
+        private Exception failure;
+
+        /**
+         * @param line raw text of the line, only kept if invalid, so that the valid lines do not
+         *             have to be copied out of the chunk
+         */
+        private void add(final int lineNumber, final Stock stock, final List<ValidationError> errors, final String line) {
+            lineNumbers.add(lineNumber);
+            stocks.add(stock);
+            validationErrors.add(errors);
+            lines.add(line);
+        }
+
+        private void failure(final int lineNumber, final String line, final Exception e) {
+            failedLineNumber = lineNumber;
+            failedLine = line;
+            failure = e;
+        }
+
+        private Flux<LineResult> lineResults(final long firstLineNumber) {
+            final Flux<LineResult> lineResults = Flux.range(0, stocks.size())
+                    .map(i -> new LineResult(firstLineNumber + lineNumbers.get(i), stocks.get(i), validationErrors.get(i), null, null, lines.get(i)));
+            return failure == null
+                    ? lineResults
+                    : lineResults.concatWith(Mono.error(new UnparseableFileException(firstLineNumber + failedLineNumber, failedLine, failure)));
+        }
+    }
 }
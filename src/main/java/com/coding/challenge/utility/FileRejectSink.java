@@ -0,0 +1,135 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.dto.LineResult;
+import com.coding.challenge.dto.ValidationError;
+import com.coding.challenge.exception.UnparseableFileException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes the rejected lines of an upload to a csv file as they are accumulated,
+ * so that they can be fixed and uploaded again: Each line is written as it was uploaded,
+ * followed by its line number and the reason of its rejection, i.e. its validation errors or
+ * the root cause of the failure of its parsing or insert, which the parser ignores as extra
+ * columns. The lines short of columns, e.g. unparseable ones, are padded so that the line
+ * number and the rejection always fall under their header. The lines without raw text at
+ * hand, e.g. the rows of a snapshot, are written from their stock.
+ * <p>
+ * Unlike the {@link FileErrorSink} file, which only holds the validation errors beyond the
+ * ones kept in the result of the upload, one per invalid field, this file holds every line
+ * rejected for whatever reason, once. Like it, the file is only created once the first line
+ * is rejected, is appended to when a job resumes, and write failures are logged without
+ * failing the upload.
+ */
+@Slf4j
+public class FileRejectSink {
+
+    public static final String HEADER = StockExportWriter.CSV_HEADER.trim() + ",line_number,rejection";
+
+    private static final int COLUMNS = StockExportWriter.CSV_HEADER.trim().split(",").length;
+
+    private final Path path;
+    private BufferedWriter writer;
+    private boolean failed;
+
+    public FileRejectSink(final Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @param lineResult to be written if rejected, ignored otherwise
+     */
+    public void write(final LineResult lineResult) {
+        if (failed || !lineResult.isRejected()) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                final boolean created = Files.notExists(path);
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                if (created) {
+                    writer.write(HEADER);
+                    writer.newLine();
+                }
+            }
+            long lineNumber = lineResult.getLineNumber() == null ? 0 : lineResult.getLineNumber();
+            String line = lineResult.getLine();
+            if (lineResult.getException() instanceof UnparseableFileException) {
+                final UnparseableFileException exception = (UnparseableFileException) lineResult.getException();
+                lineNumber = exception.getLineNumber();
+                line = exception.getLine();
+            }
+            if (line == null && lineResult.getStock() != null) {
+                line = StockExportWriter.toCsvLine(lineResult.getStock()).trim();
+            }
+            if (line == null) {
+                line = "";
+            }
+            writer.write(line);
+            for (int columns = columns(line); columns < COLUMNS; columns++) {
+                writer.write(',');
+            }
+            writer.write(',');
+            writer.write(String.valueOf(lineNumber));
+            writer.write(",\"");
+            writer.write(rejection(lineResult).replace("\"", "\"\"").replace('\r', ' ').replace('\n', ' '));
+            writer.write('"');
+            writer.newLine();
+        } catch (IOException ex) {
+            log.error(String.format("Could not write rejected lines to [File=%s]", path), ex);
+            failed = true;
+        }
+    }
+
+    public void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                log.error(String.format("Could not close [File=%s]", path), ex);
+            }
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return number of columns of the specified csv line, the commas within quotes aside
+     */
+    static int columns(final String line) {
+        int columns = 1;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                columns++;
+            }
+        }
+        return columns;
+    }
+
+    private static String rejection(final LineResult lineResult) {
+        if (!lineResult.hasValidationError()) {
+            return String.valueOf(NestedExceptionUtils.getMostSpecificCause(lineResult.getException()).getMessage());
+        }
+        final StringBuilder rejection = new StringBuilder();
+        for (ValidationError validationError : lineResult.getValidationErrors()) {
+            if (rejection.length() > 0) {
+                rejection.append(' ');
+            }
+            rejection.append(validationError.getFieldName()).append(": ").append(validationError.getMessage());
+        }
+        return rejection.toString();
+    }
+}
@@ -0,0 +1,198 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.exception.InvalidQueryException;
+import com.coding.challenge.model.Stock;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class creates the technical indicators computed over the stocks of a ticker ordered
+ * by date. An indicator is fed the stocks one at a time, holding a fixed amount of state
+ * whatever the number of stocks, and is therefore meant for a single series.
+ */
+public final class Indicators {
+
+    public static final int MAX_WINDOW = 1000;
+
+    private static final Pattern METRIC = Pattern.compile("(sma|ema|vwap|vol)(\\d*)");
+    private static final int DEFAULT_VOLATILITY_WINDOW = 20;
+
+    private Indicators() {
+    }
+
+    /**
+     * An indicator whose value is updated with each stock of the series.
+     */
+    public interface Indicator {
+
+        /**
+         * @param stock following the previous one in the series
+         * @return value of the indicator as of the stock, or null if not known yet
+         */
+        Double next(Stock stock);
+    }
+
+    /**
+     * This method creates the indicator of the specified metric, i.e. its name followed by
+     * its window: <code>sma20</code>, <code>ema12</code>, <code>vwap</code>, for the volume
+     * weighted average price since the first stock, or <code>vol20</code>, for the standard
+     * deviation of the log returns of the close price, over 20 stocks if no window is given.
+     *
+     * @param metric to be computed
+     * @return indicator of the metric
+     * @throws InvalidQueryException if the metric is unknown
+     */
+    public static Indicator of(final String metric) {
+        final Matcher matcher = METRIC.matcher(metric);
+        if (!matcher.matches()) {
+            throw new InvalidQueryException(String.format("Unknown metric [%s]", metric));
+        }
+        final String name = matcher.group(1);
+        final String window = matcher.group(2);
+        if ("vwap".equals(name)) {
+            if (!window.isEmpty()) {
+                throw new InvalidQueryException(String.format("Metric [%s] has no window", metric));
+            }
+            return new Vwap();
+        }
+        if ("vol".equals(name) && window.isEmpty()) {
+            return new Volatility(DEFAULT_VOLATILITY_WINDOW);
+        }
+        final int minWindow = "vol".equals(name) ? 2 : 1;
+        final int size = window.isEmpty() || window.length() > 4 ? 0 : Integer.parseInt(window);
+        if (size < minWindow || size > MAX_WINDOW) {
+            throw new InvalidQueryException(String.format("Window of metric [%s] must be between %d and %d", metric, minWindow, MAX_WINDOW));
+        }
+        switch (name) {
+            case "sma":
+                return new Sma(size);
+            case "ema":
+                return new Ema(size);
+            default:
+                return new Volatility(size);
+        }
+    }
+
+    private static Double close(final Stock stock) {
+        return stock.getClose() == null ? null : stock.getClose().doubleValue();
+    }
+
+    /**
+     * Simple moving average of the close price over a window of stocks.
+     */
+    static class Sma implements Indicator {
+
+        private final double[] window;
+        private int count;
+        private double sum;
+
+        Sma(final int size) {
+            this.window = new double[size];
+        }
+
+        @Override
+        public Double next(final Stock stock) {
+            final Double close = close(stock);
+            if (close == null) {
+                return null;
+            }
+            final int index = count++ % window.length;
+            sum += close - window[index];
+            window[index] = close;
+            return count < window.length ? null : sum / window.length;
+        }
+    }
+
+    /**
+     * Exponential moving average of the close price, seeded with the simple moving average
+     * of the first stocks of the window.
+     */
+    static class Ema implements Indicator {
+
+        private final int size;
+        private final double alpha;
+        private int count;
+        private double ema;
+
+        Ema(final int size) {
+            this.size = size;
+            this.alpha = 2d / (size + 1);
+        }
+
+        @Override
+        public Double next(final Stock stock) {
+            final Double close = close(stock);
+            if (close == null) {
+                return null;
+            }
+            if (count < size) {
+                ema += close / size;
+                return ++count < size ? null : ema;
+            }
+            ema += alpha * (close - ema);
+            return ema;
+        }
+    }
+
+    /**
+     * Volume weighted average of the typical price, i.e. (high + low + close) / 3, since the
+     * first stock of the series.
+     */
+    static class Vwap implements Indicator {
+
+        private double priceVolume;
+        private double volume;
+
+        @Override
+        public Double next(final Stock stock) {
+            if (stock.getHigh() != null && stock.getLow() != null && stock.getClose() != null && stock.getVolume() != null) {
+                final double typicalPrice = stock.getHigh().add(stock.getLow()).add(stock.getClose()).doubleValue() / 3;
+                priceVolume += typicalPrice * stock.getVolume();
+                volume += stock.getVolume();
+            }
+            return volume == 0 ? null : priceVolume / volume;
+        }
+    }
+
+    /**
+     * Standard deviation of the log returns of the close price over a window of stocks.
+     */
+    static class Volatility implements Indicator {
+
+        private final double[] window;
+        private int count;
+        private double sum;
+        private double sumOfSquares;
+        private double previousClose = Double.NaN;
+
+        Volatility(final int size) {
+            this.window = new double[size];
+        }
+
+        @Override
+        public Double next(final Stock stock) {
+            final Double close = close(stock);
+            if (close == null || close <= 0) {
+                return null;
+            }
+            final double previous = previousClose;
+            previousClose = close;
+            if (Double.isNaN(previous)) {
+                return null;
+            }
+
+            final double logReturn = Math.log(close / previous);
+            final int index = count++ % window.length;
+            sum += logReturn - window[index];
+            sumOfSquares += logReturn * logReturn - window[index] * window[index];
+            window[index] = logReturn;
+            if (count < window.length) {
+                return null;
+            }
+            final double mean = sum / window.length;
+            final double variance = (sumOfSquares - window.length * mean * mean) / (window.length - 1);
+            return Math.sqrt(Math.max(variance, 0d));
+        }
+    }
+}
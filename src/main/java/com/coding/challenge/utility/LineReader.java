@@ -0,0 +1,142 @@
+package com.coding.challenge.utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class reads the lines of a UTF-8 file while keeping track of the byte offset following
+ * the last line read, so that the reading of the file can later be resumed from any of its
+ * lines. Lines end with <code>\n</code>, <code>\r\n</code> or <code>\r</code>, as with
+ * {@link java.io.BufferedReader#readLine()}. The offset following a line ending with
+ * <code>\r\n</code> may be the one of its line feed, which is then skipped when resuming.
+ * <p>
+ * A line which is not valid UTF-8 is still read, its malformed bytes being replaced, but it
+ * is reported by {@link #isMalformed()} so that it can be rejected.
+ * <p>
+ * A reader is not thread safe.
+ */
+public class LineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private byte[] line = new byte[256];
+    private long offset;
+    private boolean skipLineFeed;
+    private boolean malformed;
+
+    private LineReader(final FileChannel channel, final long offset) {
+        this.channel = channel;
+        this.offset = offset;
+        buffer.flip();
+    }
+
+    /**
+     * @param path of the file
+     * @param offset to start reading from, which must be the start of a line
+     * @return reader of the lines of the file following the offset
+     * @throws IOException if the file cannot be opened
+     */
+    public static LineReader open(final Path path, final long offset) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final LineReader reader = new LineReader(channel, offset);
+            if (offset > 0) {
+                final ByteBuffer previous = ByteBuffer.allocate(1);
+                channel.read(previous, offset - 1);
+                reader.skipLineFeed = previous.get(0) == '\r';   // The line feed of a \r\n is not a line of its own.
+            }
+            channel.position(offset);
+            return reader;
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return next line, without its line terminator, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) {
+                return length > 0 ? decode(length) : null;
+            }
+            final byte b = buffer.get();
+            offset++;
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n') {
+                    continue;
+                }
+            }
+            if (b == '\n') {
+                return decode(length);
+            }
+            if (b == '\r') {
+                skipLineFeed = true;
+                return decode(length);
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+    }
+
+    /**
+     * @return whether the last line read is not valid UTF-8
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    /**
+     * @return offset following the last line read and its line terminator
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        final int read = channel.read(buffer);
+        buffer.flip();
+        return read > 0;
+    }
+
+    private String decode(final int length) {
+        malformed = false;
+        for (int i = 0; i < length; i++) {
+            if (line[i] < 0) {    // Only the lines which are not plain ASCII go through the strict decoder.
+                try {
+                    return decoder.decode(ByteBuffer.wrap(line, 0, length)).toString();
+                } catch (CharacterCodingException ex) {
+                    malformed = true;
+                    return new String(line, 0, length, StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return new String(line, 0, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,182 @@
+package com.coding.challenge.utility;
+
+/**
+ * This class parses the lines of the Dow Jones csv file, i.e. the 16 columns defined in
+ * {@link StockMapper}, following the rules of <code>CSVFormat.DEFAULT.withTrim()</code>.
+ * The fields are tokenized in place into a buffer that is reused from one line to the next,
+ * so that no object is created per field until its value is read.
+ * <p>
+ * An instance holds the fields of the last parsed line and is therefore not thread safe.
+ */
+public class StockCsvParser {
+
+    public static final int COLUMNS = 16;
+
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+
+    private final int[] starts = new int[COLUMNS];
+    private final int[] ends = new int[COLUMNS];
+    private final CharSequence chars = new Chars();
+    private char[] buffer = new char[256];
+
+    /**
+     * Parses the specified line, replacing the fields of the previously parsed line.
+     * Values beyond the 16 expected columns are ignored.
+     *
+     * @param line to be parsed
+     * @return this parser, to read the fields of the line
+     * @throws IllegalArgumentException if the line is malformed or has less than 16 values
+     */
+    public StockCsvParser parse(final CharSequence line) {
+        return parse(line, 0, line.length());
+    }
+
+    /**
+     * Parses the line found between the specified indexes of the characters, replacing the
+     * fields of the previously parsed line.
+     *
+     * @param line characters holding the line to be parsed
+     * @param from index of the first character of the line
+     * @param to index following the last character of the line
+     * @return this parser, to read the fields of the line
+     * @throws IllegalArgumentException if the line is malformed or has less than 16 values
+     */
+    public StockCsvParser parse(final CharSequence line, final int from, final int to) {
+        if (buffer.length < to - from) {
+            buffer = new char[Math.max(to - from, buffer.length * 2)];
+        }
+
+        int position = from;
+        int size = 0;
+        int field = 0;
+        while (field < COLUMNS) {
+            final int start = size;
+            if (position < to && line.charAt(position) == QUOTE) {
+                position++;
+                while (true) {
+                    if (position >= to) {
+                        throw new IllegalArgumentException("EOF reached before encapsulated token finished");
+                    }
+                    final char c = line.charAt(position++);
+                    if (c == QUOTE) {
+                        if (position < to && line.charAt(position) == QUOTE) {
+                            buffer[size++] = QUOTE;
+                            position++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        buffer[size++] = c;
+                    }
+                }
+                while (position < to && line.charAt(position) != DELIMITER) {
+                    if (!Character.isWhitespace(line.charAt(position++))) {
+                        throw new IllegalArgumentException("Invalid char between encapsulated token and delimiter");
+                    }
+                }
+            } else {
+                while (position < to) {
+                    final char c = line.charAt(position);
+                    if (c == DELIMITER) {
+                        break;
+                    }
+                    buffer[size++] = c;
+                    position++;
+                }
+            }
+            trim(field++, start, size);
+
+            if (position >= to) {
+                break;
+            }
+            position++;     // Skip the delimiter.
+        }
+
+        if (field < COLUMNS) {
+            throw new IllegalArgumentException(String.format("Line only has %d values while %d are expected", field, COLUMNS));
+        }
+        return this;
+    }
+
+    /**
+     * Stores the bounds of the field, trimmed like <code>String.trim()</code> would.
+     */
+    private void trim(final int field, int start, int end) {
+        while (start < end && buffer[start] <= ' ') {
+            start++;
+        }
+        while (end > start && buffer[end - 1] <= ' ') {
+            end--;
+        }
+        starts[field] = start;
+        ends[field] = end;
+    }
+
+    /**
+     * @param field index of the field
+     * @return true if the field contains at least one non-whitespace character
+     */
+    public boolean hasText(final int field) {
+        for (int i = starts[field]; i < ends[field]; i++) {
+            if (!Character.isWhitespace(buffer[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param field index of the field
+     * @return value of the field
+     */
+    public String get(final int field) {
+        return new String(buffer, starts[field], ends[field] - starts[field]);
+    }
+
+    /**
+     * @return view of the buffer holding the fields, to decode them without creating strings
+     */
+    public CharSequence chars() {
+        return chars;
+    }
+
+    /**
+     * @param field index of the field
+     * @return index of the first character of the field within {@link #chars()}
+     */
+    public int start(final int field) {
+        return starts[field];
+    }
+
+    /**
+     * @param field index of the field
+     * @return index following the last character of the field within {@link #chars()}
+     */
+    public int end(final int field) {
+        return ends[field];
+    }
+
+    private class Chars implements CharSequence {
+
+        @Override
+        public int length() {
+            return buffer.length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return buffer[index];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return new String(buffer, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer);
+        }
+    }
+}
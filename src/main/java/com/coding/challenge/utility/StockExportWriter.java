@@ -0,0 +1,134 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.model.Stock;
+import io.r2dbc.spi.Row;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.function.IntFunction;
+
+/**
+ * This class writes the rows of the stock table read in the order of the columns of the
+ * Dow Jones csv file, i.e. the order of {@link StockMapper}, as the lines of an export, or
+ * stocks as csv lines. The
+ * values are written as they are uploaded, so that an export can be ingested back.
+ */
+public final class StockExportWriter {
+
+    public static final String CSV_HEADER = String.join(",",
+            StockMapper.QUARTER, StockMapper.STOCK, StockMapper.DATE, StockMapper.OPEN, StockMapper.HIGH, StockMapper.LOW,
+            StockMapper.CLOSE, StockMapper.VOLUME, StockMapper.PERCENT_CHANGE_PRICE, StockMapper.PERCENT_CHANGE_VOLUME_OVER_LAST_WK,
+            StockMapper.PREVIOUS_WEEKS_VOLUME, StockMapper.NEXT_WEEKS_OPEN, StockMapper.NEXT_WEEKS_CLOSE,
+            StockMapper.PERCENT_CHANGE_NEXT_WEEKS_PRICE, StockMapper.DAYS_TO_NEXT_DIVIDEND, StockMapper.PERCENT_RETURN_NEXT_DIVIDEND) + "\n";
+
+    /**
+     * Fields of {@link com.coding.challenge.dto.Stock}, in the order of the columns.
+     */
+    private static final String[] JSON_FIELDS = {
+            "quarter", "stock", "date", "open", "high", "low", "close", "volume", "percentChangePrice",
+            "percentChangeVolumeOverLastWeek", "previousWeeksVolume", "nextWeeksOpen", "nextWeeksClose",
+            "percentChangeNextWeeksPrice", "daysToNextDividend", "percentReturnNextDividend"
+    };
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("M/d/yyyy");
+
+    private StockExportWriter() {
+    }
+
+    /**
+     * @param row of the stock table
+     * @return csv line of the row, quoting the values that would not be read back otherwise
+     */
+    public static String toCsvLine(final Row row) {
+        return toCsvLine(row::get);
+    }
+
+    /**
+     * @param stock to be written, e.g. one that could not be ingested
+     * @return csv line of the stock, as the line it could have been read from
+     */
+    public static String toCsvLine(final Stock stock) {
+        final Object[] values = {
+                stock.getQuarter(), stock.getTicker(), stock.getStockDate(), stock.getOpen(), stock.getHigh(), stock.getLow(),
+                stock.getClose(), stock.getVolume(), stock.getPercentChangePrice(), stock.getPercentChangeVolumeOverLastWeek(),
+                stock.getPreviousWeeksVolume(), stock.getNextWeeksOpen(), stock.getNextWeeksClose(),
+                stock.getPercentChangeNextWeeksPrice(), stock.getDaysToNextDividend(), stock.getPercentReturnNextDividend()
+        };
+        return toCsvLine(index -> values[index]);
+    }
+
+    private static String toCsvLine(final IntFunction<Object> values) {
+        final StringBuilder line = new StringBuilder(160);
+        for (int i = 0; i < StockCsvParser.COLUMNS; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            final String value = format(values.apply(i), i);
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                line.append(value);
+            } else {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    /**
+     * @param row of the stock table
+     * @return json line of the row, missing values being null
+     */
+    public static String toJsonLine(final Row row) {
+        final StringBuilder line = new StringBuilder(400).append('{');
+        for (int i = 0; i < StockCsvParser.COLUMNS; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append('"').append(JSON_FIELDS[i]).append("\":");
+            final String value = format(row.get(i), i);
+            if (value == null) {
+                line.append("null");
+            } else {
+                appendJsonString(line, value);
+            }
+        }
+        return line.append("}\n").toString();
+    }
+
+    private static String format(final Object value, final int index) {
+        if (value == null) {
+            return null;
+        }
+        switch (index) {
+            case StockMapper.DATE_INDEX:
+                return ((LocalDate) value).format(DATE_FORMATTER);
+            case StockMapper.OPEN_INDEX:
+            case StockMapper.HIGH_INDEX:
+            case StockMapper.LOW_INDEX:
+            case StockMapper.CLOSE_INDEX:
+            case StockMapper.NEXT_WEEKS_OPEN_INDEX:
+            case StockMapper.NEXT_WEEKS_CLOSE_INDEX:
+                return "$" + ((BigDecimal) value).toPlainString();
+            default:
+                return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        }
+    }
+
+    private static void appendJsonString(final StringBuilder line, final String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
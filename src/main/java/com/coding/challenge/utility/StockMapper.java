@@ -6,6 +6,8 @@ import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 
 /**
@@ -30,6 +32,30 @@ public class StockMapper {
     public static final String DAYS_TO_NEXT_DIVIDEND = "days_to_next_dividend";
     public static final String PERCENT_RETURN_NEXT_DIVIDEND = "percent_return_next_dividend";
 
+    public static final int QUARTER_INDEX = 0;
+    public static final int STOCK_INDEX = 1;
+    public static final int DATE_INDEX = 2;
+    public static final int OPEN_INDEX = 3;
+    public static final int HIGH_INDEX = 4;
+    public static final int LOW_INDEX = 5;
+    public static final int CLOSE_INDEX = 6;
+    public static final int VOLUME_INDEX = 7;
+    public static final int PERCENT_CHANGE_PRICE_INDEX = 8;
+    public static final int PERCENT_CHANGE_VOLUME_OVER_LAST_WK_INDEX = 9;
+    public static final int PREVIOUS_WEEKS_VOLUME_INDEX = 10;
+    public static final int NEXT_WEEKS_OPEN_INDEX = 11;
+    public static final int NEXT_WEEKS_CLOSE_INDEX = 12;
+    public static final int PERCENT_CHANGE_NEXT_WEEKS_PRICE_INDEX = 13;
+    public static final int DAYS_TO_NEXT_DIVIDEND_INDEX = 14;
+    public static final int PERCENT_RETURN_NEXT_DIVIDEND_INDEX = 15;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("M/d/yyyy");
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
     public static void toStock( com.coding.challenge.model.Stock fromStock, com.coding.challenge.model.Stock toStock ){
         toStock.setQuarter(fromStock.getQuarter());
         toStock.setOpen(fromStock.getOpen());
@@ -55,22 +81,22 @@ public class StockMapper {
      */
     public static com.coding.challenge.model.Stock toStock(Stock stock) {
         return new com.coding.challenge.model.Stock(
-                StringUtils.hasText(stock.getQuarter()) ? Integer.parseInt(stock.getQuarter()) : -1,
+                StringUtils.hasText(stock.getQuarter()) ? parseInt(stock.getQuarter()) : -1,
                 stock.getStock(),
-                StringUtils.hasText(stock.getDate()) ? LocalDate.parse(stock.getDate(), DateTimeFormatter.ofPattern("M/d/yyyy")) : null,
-                StringUtils.hasText(stock.getOpen()) ? new BigDecimal(stock.getOpen().replace("$", "")) : null,
-                StringUtils.hasText(stock.getHigh()) ? new BigDecimal(stock.getHigh().replace("$", "")) : null,
-                StringUtils.hasText(stock.getLow()) ? new BigDecimal(stock.getLow().replace("$", "")) : null,
-                StringUtils.hasText(stock.getClose()) ? new BigDecimal(stock.getClose().replace("$", "")) : null,
-                StringUtils.hasText(stock.getVolume()) ? Long.parseLong(stock.getVolume()) : null,
-                StringUtils.hasText(stock.getPercentChangePrice()) ? Double.parseDouble(stock.getPercentChangePrice()) : null,
-                StringUtils.hasText(stock.getPercentChangeVolumeOverLastWeek()) ? Double.parseDouble(stock.getPercentChangeVolumeOverLastWeek()) : null,
-                StringUtils.hasText(stock.getPreviousWeeksVolume()) ? Long.parseLong(stock.getPreviousWeeksVolume()) : null,
-                StringUtils.hasText(stock.getNextWeeksOpen()) ? new BigDecimal(stock.getNextWeeksOpen().replace("$", "")) : null,
-                StringUtils.hasText(stock.getNextWeeksClose()) ? new BigDecimal(stock.getNextWeeksClose().replace("$", "")) : null,
-                StringUtils.hasText(stock.getPercentChangeNextWeeksPrice()) ? Double.parseDouble(stock.getPercentChangeNextWeeksPrice()) : null,
-                StringUtils.hasText(stock.getDaysToNextDividend()) ? Integer.parseInt(stock.getDaysToNextDividend()) : 0,
-                StringUtils.hasText(stock.getPercentReturnNextDividend()) ? Double.parseDouble(stock.getPercentReturnNextDividend()) : null
+                StringUtils.hasText(stock.getDate()) ? parseDate(stock.getDate()) : null,
+                StringUtils.hasText(stock.getOpen()) ? parsePrice(stock.getOpen()) : null,
+                StringUtils.hasText(stock.getHigh()) ? parsePrice(stock.getHigh()) : null,
+                StringUtils.hasText(stock.getLow()) ? parsePrice(stock.getLow()) : null,
+                StringUtils.hasText(stock.getClose()) ? parsePrice(stock.getClose()) : null,
+                StringUtils.hasText(stock.getVolume()) ? parseLong(stock.getVolume()) : null,
+                StringUtils.hasText(stock.getPercentChangePrice()) ? parseDouble(stock.getPercentChangePrice()) : null,
+                StringUtils.hasText(stock.getPercentChangeVolumeOverLastWeek()) ? parseDouble(stock.getPercentChangeVolumeOverLastWeek()) : null,
+                StringUtils.hasText(stock.getPreviousWeeksVolume()) ? parseLong(stock.getPreviousWeeksVolume()) : null,
+                StringUtils.hasText(stock.getNextWeeksOpen()) ? parsePrice(stock.getNextWeeksOpen()) : null,
+                StringUtils.hasText(stock.getNextWeeksClose()) ? parsePrice(stock.getNextWeeksClose()) : null,
+                StringUtils.hasText(stock.getPercentChangeNextWeeksPrice()) ? parseDouble(stock.getPercentChangeNextWeeksPrice()) : null,
+                StringUtils.hasText(stock.getDaysToNextDividend()) ? parseInt(stock.getDaysToNextDividend()) : 0,
+                StringUtils.hasText(stock.getPercentReturnNextDividend()) ? parseDouble(stock.getPercentReturnNextDividend()) : null
 
         );
     }
@@ -83,23 +109,236 @@ public class StockMapper {
      */
     public static com.coding.challenge.model.Stock toStock(CSVRecord csvRecord)
     {
+        final String quarter = csvRecord.get(QUARTER_INDEX);
+        final String date = csvRecord.get(DATE_INDEX);
+        final String open = csvRecord.get(OPEN_INDEX);
+        final String high = csvRecord.get(HIGH_INDEX);
+        final String low = csvRecord.get(LOW_INDEX);
+        final String close = csvRecord.get(CLOSE_INDEX);
+        final String volume = csvRecord.get(VOLUME_INDEX);
+        final String percentChangePrice = csvRecord.get(PERCENT_CHANGE_PRICE_INDEX);
+        final String percentChangeVolumeOverLastWeek = csvRecord.get(PERCENT_CHANGE_VOLUME_OVER_LAST_WK_INDEX);
+        final String previousWeeksVolume = csvRecord.get(PREVIOUS_WEEKS_VOLUME_INDEX);
+        final String nextWeeksOpen = csvRecord.get(NEXT_WEEKS_OPEN_INDEX);
+        final String nextWeeksClose = csvRecord.get(NEXT_WEEKS_CLOSE_INDEX);
+        final String percentChangeNextWeeksPrice = csvRecord.get(PERCENT_CHANGE_NEXT_WEEKS_PRICE_INDEX);
+        final String daysToNextDividend = csvRecord.get(DAYS_TO_NEXT_DIVIDEND_INDEX);
+        final String percentReturnNextDividend = csvRecord.get(PERCENT_RETURN_NEXT_DIVIDEND_INDEX);
+
+        return new com.coding.challenge.model.Stock(
+                StringUtils.hasText(quarter) ? parseInt(quarter) : -1,
+                csvRecord.get(STOCK_INDEX),
+                StringUtils.hasText(date) ? parseDate(date) : null,
+                StringUtils.hasText(open) ? parsePrice(open) : null,
+                StringUtils.hasText(high) ? parsePrice(high) : null,
+                StringUtils.hasText(low) ? parsePrice(low) : null,
+                StringUtils.hasText(close) ? parsePrice(close) : null,
+                StringUtils.hasText(volume) ? parseLong(volume) : null,
+                StringUtils.hasText(percentChangePrice) ? parseDouble(percentChangePrice) : null,
+                StringUtils.hasText(percentChangeVolumeOverLastWeek) ? parseDouble(percentChangeVolumeOverLastWeek) : null,
+                StringUtils.hasText(previousWeeksVolume) ? parseLong(previousWeeksVolume) : null,
+                StringUtils.hasText(nextWeeksOpen) ? parsePrice(nextWeeksOpen) : null,
+                StringUtils.hasText(nextWeeksClose) ? parsePrice(nextWeeksClose) : null,
+                StringUtils.hasText(percentChangeNextWeeksPrice) ? parseDouble(percentChangeNextWeeksPrice) : null,
+                StringUtils.hasText(daysToNextDividend) ? Integer.valueOf(parseInt(daysToNextDividend)) : null,
+                StringUtils.hasText(percentReturnNextDividend) ? parseDouble(percentReturnNextDividend) : null
+        );
+    }
+
+    /**
+     * Converts the line last parsed by {@link StockCsvParser} to {@link com.coding.challenge.model.Stock}
+     *
+     * @param parser holding the fields of the line to be converted
+     * @return converted {@link com.coding.challenge.model.Stock}
+     */
+    public static com.coding.challenge.model.Stock toStock(StockCsvParser parser)
+    {
+        final CharSequence chars = parser.chars();
         return new com.coding.challenge.model.Stock(
-                StringUtils.hasText(csvRecord.get(QUARTER)) ? Integer.parseInt(csvRecord.get(QUARTER)) : -1,
-                csvRecord.get(STOCK),
-                StringUtils.hasText(csvRecord.get(DATE)) ? LocalDate.parse(csvRecord.get(DATE), DateTimeFormatter.ofPattern("M/d/yyyy")) : null,
-                StringUtils.hasText(csvRecord.get(OPEN)) ? new BigDecimal(csvRecord.get(OPEN).replace("$", "")) : null,
-                StringUtils.hasText(csvRecord.get(HIGH)) ? new BigDecimal(csvRecord.get(HIGH).replace("$", "")) : null,
-                StringUtils.hasText(csvRecord.get(LOW)) ? new BigDecimal(csvRecord.get(LOW).replace("$", "")) : null,
-                StringUtils.hasText(csvRecord.get(CLOSE)) ? new BigDecimal(csvRecord.get(CLOSE).replace("$", "")) : null,
-                StringUtils.hasText(csvRecord.get(VOLUME)) ? Long.parseLong(csvRecord.get(VOLUME)) : null,
-                StringUtils.hasText(csvRecord.get(PERCENT_CHANGE_PRICE)) ? Double.parseDouble(csvRecord.get(PERCENT_CHANGE_PRICE)) : null,
-                StringUtils.hasText(csvRecord.get(PERCENT_CHANGE_VOLUME_OVER_LAST_WK)) ? Double.parseDouble(csvRecord.get(PERCENT_CHANGE_VOLUME_OVER_LAST_WK)) : null,
-                StringUtils.hasText(csvRecord.get(PREVIOUS_WEEKS_VOLUME)) ? Long.parseLong(csvRecord.get(PREVIOUS_WEEKS_VOLUME)) : null,
-                StringUtils.hasText(csvRecord.get(NEXT_WEEKS_OPEN)) ? new BigDecimal(csvRecord.get(NEXT_WEEKS_OPEN).replace("$", "")) : null,
-                StringUtils.hasText(csvRecord.get(NEXT_WEEKS_CLOSE)) ? new BigDecimal(csvRecord.get(NEXT_WEEKS_CLOSE).replace("$", "")) : null,
-                StringUtils.hasText(csvRecord.get(PERCENT_CHANGE_NEXT_WEEKS_PRICE)) ? Double.parseDouble(csvRecord.get(PERCENT_CHANGE_NEXT_WEEKS_PRICE)) : null,
-                StringUtils.hasText(csvRecord.get(DAYS_TO_NEXT_DIVIDEND)) ? Integer.parseInt(csvRecord.get(DAYS_TO_NEXT_DIVIDEND)) : null,
-                StringUtils.hasText(csvRecord.get(PERCENT_RETURN_NEXT_DIVIDEND)) ? Double.parseDouble(csvRecord.get(PERCENT_RETURN_NEXT_DIVIDEND)) : null
+                parser.hasText(QUARTER_INDEX) ? parseInt(chars, parser.start(QUARTER_INDEX), parser.end(QUARTER_INDEX)) : -1,
+                parser.get(STOCK_INDEX),
+                parser.hasText(DATE_INDEX) ? parseDate(chars, parser.start(DATE_INDEX), parser.end(DATE_INDEX)) : null,
+                parser.hasText(OPEN_INDEX) ? parsePrice(chars, parser.start(OPEN_INDEX), parser.end(OPEN_INDEX)) : null,
+                parser.hasText(HIGH_INDEX) ? parsePrice(chars, parser.start(HIGH_INDEX), parser.end(HIGH_INDEX)) : null,
+                parser.hasText(LOW_INDEX) ? parsePrice(chars, parser.start(LOW_INDEX), parser.end(LOW_INDEX)) : null,
+                parser.hasText(CLOSE_INDEX) ? parsePrice(chars, parser.start(CLOSE_INDEX), parser.end(CLOSE_INDEX)) : null,
+                parser.hasText(VOLUME_INDEX) ? parseLong(chars, parser.start(VOLUME_INDEX), parser.end(VOLUME_INDEX)) : null,
+                parser.hasText(PERCENT_CHANGE_PRICE_INDEX) ? parseDouble(chars, parser.start(PERCENT_CHANGE_PRICE_INDEX), parser.end(PERCENT_CHANGE_PRICE_INDEX)) : null,
+                parser.hasText(PERCENT_CHANGE_VOLUME_OVER_LAST_WK_INDEX) ? parseDouble(chars, parser.start(PERCENT_CHANGE_VOLUME_OVER_LAST_WK_INDEX), parser.end(PERCENT_CHANGE_VOLUME_OVER_LAST_WK_INDEX)) : null,
+                parser.hasText(PREVIOUS_WEEKS_VOLUME_INDEX) ? parseLong(chars, parser.start(PREVIOUS_WEEKS_VOLUME_INDEX), parser.end(PREVIOUS_WEEKS_VOLUME_INDEX)) : null,
+                parser.hasText(NEXT_WEEKS_OPEN_INDEX) ? parsePrice(chars, parser.start(NEXT_WEEKS_OPEN_INDEX), parser.end(NEXT_WEEKS_OPEN_INDEX)) : null,
+                parser.hasText(NEXT_WEEKS_CLOSE_INDEX) ? parsePrice(chars, parser.start(NEXT_WEEKS_CLOSE_INDEX), parser.end(NEXT_WEEKS_CLOSE_INDEX)) : null,
+                parser.hasText(PERCENT_CHANGE_NEXT_WEEKS_PRICE_INDEX) ? parseDouble(chars, parser.start(PERCENT_CHANGE_NEXT_WEEKS_PRICE_INDEX), parser.end(PERCENT_CHANGE_NEXT_WEEKS_PRICE_INDEX)) : null,
+                parser.hasText(DAYS_TO_NEXT_DIVIDEND_INDEX) ? Integer.valueOf(parseInt(chars, parser.start(DAYS_TO_NEXT_DIVIDEND_INDEX), parser.end(DAYS_TO_NEXT_DIVIDEND_INDEX))) : null,
+                parser.hasText(PERCENT_RETURN_NEXT_DIVIDEND_INDEX) ? parseDouble(chars, parser.start(PERCENT_RETURN_NEXT_DIVIDEND_INDEX), parser.end(PERCENT_RETURN_NEXT_DIVIDEND_INDEX)) : null
         );
     }
+
+    private static int parseInt(String value) {
+        return parseInt(value, 0, value.length());
+    }
+
+    private static long parseLong(String value) {
+        return parseLong(value, 0, value.length());
+    }
+
+    private static double parseDouble(String value) {
+        return parseDouble(value, 0, value.length());
+    }
+
+    private static BigDecimal parsePrice(String value) {
+        return parsePrice(value, 0, value.length());
+    }
+
+    private static LocalDate parseDate(String value) {
+        return parseDate(value, 0, value.length());
+    }
+
+    /**
+     * Decodes the specified characters like <code>Integer.parseInt</code> would, without
+     * creating a string for the common case of plain ascii digits.
+     */
+    static int parseInt(CharSequence chars, int start, int end) {
+        final long value = parseDigits(chars, start, end, 9);
+        return value == Long.MIN_VALUE
+                ? Integer.parseInt(chars.subSequence(start, end).toString())
+                : (int) value;
+    }
+
+    /**
+     * Decodes the specified characters like <code>Long.parseLong</code> would, without
+     * creating a string for the common case of plain ascii digits.
+     */
+    static long parseLong(CharSequence chars, int start, int end) {
+        final long value = parseDigits(chars, start, end, 18);
+        return value == Long.MIN_VALUE
+                ? Long.parseLong(chars.subSequence(start, end).toString())
+                : value;
+    }
+
+    /**
+     * @return signed value of at most the specified number of digits, or <code>Long.MIN_VALUE</code>
+     * if the characters are anything else
+     */
+    private static long parseDigits(CharSequence chars, int start, int end, int maxDigits) {
+        boolean negative = false;
+        if (start < end && (chars.charAt(start) == '-' || chars.charAt(start) == '+')) {
+            negative = chars.charAt(start++) == '-';
+        }
+        if (start == end || end - start > maxDigits) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = chars.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes the specified characters like <code>new BigDecimal(value.replace("$", ""))</code> would.
+     * The digits are accumulated as a scaled long, e.g. $15.82 as 1582 with a scale of 2, which
+     * covers the <code>NUMERIC(10,2)</code> prices without creating any intermediate string.
+     */
+    static BigDecimal parsePrice(CharSequence chars, int start, int end) {
+        boolean negative = false;
+        boolean signed = false;
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = start; i < end; i++) {
+            final char c = chars.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 18) {
+                    return new BigDecimal(chars.subSequence(start, end).toString().replace("$", ""));
+                }
+                unscaled = unscaled * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if ((c == '-' || c == '+') && !signed && digits == 0 && scale < 0) {
+                negative = c == '-';
+                signed = true;
+            } else if (c != '$') {
+                return new BigDecimal(chars.subSequence(start, end).toString().replace("$", ""));
+            }
+        }
+        if (digits == 0) {
+            return new BigDecimal(chars.subSequence(start, end).toString().replace("$", ""));
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+    }
+
+    /**
+     * Decodes the specified characters like <code>Double.parseDouble</code> would. Plain decimals of
+     * at most 15 digits are exactly representable as doubles, as are the powers of ten up to 22, so
+     * that a single division gives the correctly rounded value; anything else goes through the jdk.
+     */
+    static double parseDouble(CharSequence chars, int start, int end) {
+        final int begin = start;
+        boolean negative = false;
+        if (start < end && (chars.charAt(start) == '-' || chars.charAt(start) == '+')) {
+            negative = chars.charAt(start++) == '-';
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = start; i < end; i++) {
+            final char c = chars.charAt(i);
+            if (c >= '0' && c <= '9' && digits < 15) {
+                unscaled = unscaled * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return Double.parseDouble(chars.subSequence(begin, end).toString());
+            }
+        }
+        if (digits == 0) {
+            return Double.parseDouble(chars.subSequence(begin, end).toString());
+        }
+        final double value = unscaled / POWERS_OF_TEN[Math.max(scale, 0)];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes the specified characters like <code>LocalDate.parse(value, DateTimeFormatter.ofPattern("M/d/yyyy"))</code>
+     * would. Valid dates with 1 or 2 digit months and days and 4 digit years are decoded by hand, anything
+     * else goes through the shared formatter.
+     */
+    static LocalDate parseDate(CharSequence chars, int start, int end) {
+        int i = start;
+        int month = 0;
+        while (i < end && i - start < 3 && chars.charAt(i) >= '0' && chars.charAt(i) <= '9') {
+            month = month * 10 + (chars.charAt(i++) - '0');
+        }
+        final int monthEnd = i;
+        if (monthEnd - start >= 1 && monthEnd - start <= 2 && i < end && chars.charAt(i) == '/') {
+            int day = 0;
+            while (++i < end && i - monthEnd < 4 && chars.charAt(i) >= '0' && chars.charAt(i) <= '9') {
+                day = day * 10 + (chars.charAt(i) - '0');
+            }
+            final int dayEnd = i;
+            if (dayEnd - monthEnd >= 2 && dayEnd - monthEnd <= 3 && i < end && chars.charAt(i) == '/' && end - i == 5) {
+                int year = 0;
+                while (++i < end && chars.charAt(i) >= '0' && chars.charAt(i) <= '9') {
+                    year = year * 10 + (chars.charAt(i) - '0');
+                }
+                if (i == end && year > 0 && month >= 1 && month <= 12 && day >= 1
+                        && day <= Month.of(month).length(Year.isLeap(year))) {
+                    return LocalDate.of(year, month, day);
+                }
+            }
+        }
+        return LocalDate.parse(chars.subSequence(start, end), DATE_FORMATTER);
+    }
 }
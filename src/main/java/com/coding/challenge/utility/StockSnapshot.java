@@ -0,0 +1,78 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.model.StockSeries;
+
+import java.math.BigDecimal;
+
+/**
+ * This class defines the binary columnar format of the snapshots of the stock table, version 1.
+ * All the numbers are big-endian.
+ * <pre>
+ * header     int magic ("STKS"), short version, short column count, int row count, int price scale
+ * directory  per column: byte column, byte encoding, long offset of its block, long length of its block
+ * blocks     per column, in the order of the directory
+ * </pre>
+ * The columns are those of the Dow Jones csv file, identified by their index in {@link StockMapper},
+ * their block being encoded as follows:
+ * <ul>
+ *     <li>{@link #DICTIONARY}: int number of distinct values, each value as a short length followed by
+ *     its UTF-8 bytes, then an int code per row, i.e. the index of its value or -1 if null.</li>
+ *     <li>{@link #DELTA_VARINT}: per row, the difference between its epoch day and the one of the
+ *     previous row, zigzag encoded as a variable length long, a null date being {@link #NULL_INT}.</li>
+ *     <li>{@link #SCALED_LONG}: a long per row, the price multiplied by 10 ^ price scale, or {@link #NULL_LONG}.</li>
+ *     <li>{@link #LONG}: a long per row, or {@link #NULL_LONG}.</li>
+ *     <li>{@link #DOUBLE}: a double per row, NaN if null.</li>
+ *     <li>{@link #INT}: an int per row.</li>
+ *     <li>{@link #BYTE}: a byte per row.</li>
+ * </ul>
+ * Every block but the dates being of fixed width, the value of any row is read in constant time
+ * straight from a memory-mapped file.
+ */
+public final class StockSnapshot {
+
+    public static final int MAGIC = 0x53544B53;
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int DIRECTORY_ENTRY_SIZE = 18;
+    public static final int PRICE_SCALE = StockSeries.PRICE_SCALE;
+
+    public static final long NULL_LONG = StockSeries.NULL_LONG;
+    public static final int NULL_INT = Integer.MIN_VALUE;
+
+    public static final byte DICTIONARY = 1;
+    public static final byte DELTA_VARINT = 2;
+    public static final byte SCALED_LONG = 3;
+    public static final byte LONG = 4;
+    public static final byte DOUBLE = 5;
+    public static final byte INT = 6;
+    public static final byte BYTE = 7;
+
+    /**
+     * Encoding of each column, indexed as in {@link StockMapper}.
+     */
+    static final byte[] ENCODINGS = {
+            BYTE,           // quarter
+            DICTIONARY,     // stock
+            DELTA_VARINT,   // date
+            SCALED_LONG,    // open
+            SCALED_LONG,    // high
+            SCALED_LONG,    // low
+            SCALED_LONG,    // close
+            LONG,           // volume
+            DOUBLE,         // percent_change_price
+            DOUBLE,         // percent_change_volume_over_last_wk
+            LONG,           // previous_weeks_volume
+            SCALED_LONG,    // next_weeks_open
+            SCALED_LONG,    // next_weeks_close
+            DOUBLE,         // percent_change_next_weeks_price
+            INT,            // days_to_next_dividend
+            DOUBLE          // percent_return_next_dividend
+    };
+
+    private StockSnapshot() {
+    }
+
+    static BigDecimal toPrice(final long scaled, final int scale) {
+        return scaled == NULL_LONG ? null : BigDecimal.valueOf(scaled, scale);
+    }
+}
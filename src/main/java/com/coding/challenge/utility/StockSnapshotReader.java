@@ -0,0 +1,196 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.model.Stock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * This class reads a {@link StockSnapshot} by memory-mapping the block of each column, so
+ * that a value is read straight from the page cache, without parsing nor copying the file.
+ * The dates, being of variable length, are decoded once when the snapshot is opened.
+ * <p>
+ * A reader is thread safe, its buffers only being read through absolute positions.
+ */
+public class StockSnapshotReader implements Closeable {
+
+    private final FileChannel channel;
+    private final int size;
+    private final int priceScale;
+    private final ByteBuffer[] columns = new ByteBuffer[StockCsvParser.COLUMNS];
+    private final String[] tickers;
+    private final int[] epochDays;
+
+    private StockSnapshotReader(final FileChannel channel) throws IOException {
+        this.channel = channel;
+
+        final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(),
+                StockSnapshot.HEADER_SIZE + StockCsvParser.COLUMNS * StockSnapshot.DIRECTORY_ENTRY_SIZE));
+        if (header.limit() < StockSnapshot.HEADER_SIZE || header.getInt() != StockSnapshot.MAGIC) {
+            throw new IOException("Not a stock snapshot");
+        }
+        final short version = header.getShort();
+        final short columnCount = header.getShort();
+        if (version != StockSnapshot.VERSION || columnCount != StockCsvParser.COLUMNS) {
+            throw new IOException(String.format("Unsupported stock snapshot [Version=%d] [Columns=%d]", version, columnCount));
+        }
+        this.size = header.getInt();
+        this.priceScale = header.getInt();
+
+        for (int i = 0; i < columnCount; i++) {
+            final int column = header.get();
+            final byte encoding = header.get();
+            final long offset = header.getLong();
+            final long length = header.getLong();
+            if (column != i || encoding != StockSnapshot.ENCODINGS[i] || offset + length > channel.size()) {
+                throw new IOException(String.format("Invalid block of [Column=%d] in stock snapshot", column));
+            }
+            columns[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+
+        this.tickers = readDictionary(columns[StockMapper.STOCK_INDEX]);
+        columns[StockMapper.STOCK_INDEX] = columns[StockMapper.STOCK_INDEX].slice();     // Codes of the rows.
+        this.epochDays = readDates(columns[StockMapper.DATE_INDEX], size);
+    }
+
+    /**
+     * @param file of the snapshot
+     * @return reader of the snapshot, to be closed once read
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static StockSnapshotReader open(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new StockSnapshotReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getQuarter(final int row) {
+        return columns[StockMapper.QUARTER_INDEX].get(row);
+    }
+
+    public String getTicker(final int row) {
+        final int code = columns[StockMapper.STOCK_INDEX].getInt(row * Integer.BYTES);
+        return code < 0 ? null : tickers[code];
+    }
+
+    public LocalDate getStockDate(final int row) {
+        return epochDays[row] == StockSnapshot.NULL_INT ? null : LocalDate.ofEpochDay(epochDays[row]);
+    }
+
+    /**
+     * @param column index of a price column in {@link StockMapper}
+     * @param row index of the stock
+     * @return price, or null if missing
+     */
+    public BigDecimal getPrice(final int column, final int row) {
+        return StockSnapshot.toPrice(getLong(column, row), priceScale);
+    }
+
+    /**
+     * @param column index of a price or volume column in {@link StockMapper}
+     * @param row index of the stock
+     * @return price as a scaled long or volume, {@link StockSnapshot#NULL_LONG} if missing
+     */
+    public long getLong(final int column, final int row) {
+        return columns[column].getLong(row * Long.BYTES);
+    }
+
+    /**
+     * @param column index of a percent column in {@link StockMapper}
+     * @param row index of the stock
+     * @return percent, NaN if missing
+     */
+    public double getDouble(final int column, final int row) {
+        return columns[column].getDouble(row * Double.BYTES);
+    }
+
+    public int getDaysToNextDividend(final int row) {
+        return columns[StockMapper.DAYS_TO_NEXT_DIVIDEND_INDEX].getInt(row * Integer.BYTES);
+    }
+
+    /**
+     * @param row index of the stock
+     * @return new stock of the specified row
+     */
+    public Stock getStock(final int row) {
+        return new Stock(
+                getQuarter(row),
+                getTicker(row),
+                getStockDate(row),
+                getPrice(StockMapper.OPEN_INDEX, row),
+                getPrice(StockMapper.HIGH_INDEX, row),
+                getPrice(StockMapper.LOW_INDEX, row),
+                getPrice(StockMapper.CLOSE_INDEX, row),
+                toLong(getLong(StockMapper.VOLUME_INDEX, row)),
+                toDouble(getDouble(StockMapper.PERCENT_CHANGE_PRICE_INDEX, row)),
+                toDouble(getDouble(StockMapper.PERCENT_CHANGE_VOLUME_OVER_LAST_WK_INDEX, row)),
+                toLong(getLong(StockMapper.PREVIOUS_WEEKS_VOLUME_INDEX, row)),
+                getPrice(StockMapper.NEXT_WEEKS_OPEN_INDEX, row),
+                getPrice(StockMapper.NEXT_WEEKS_CLOSE_INDEX, row),
+                toDouble(getDouble(StockMapper.PERCENT_CHANGE_NEXT_WEEKS_PRICE_INDEX, row)),
+                getDaysToNextDividend(row),
+                toDouble(getDouble(StockMapper.PERCENT_RETURN_NEXT_DIVIDEND_INDEX, row)));
+    }
+
+    /**
+     * Closes the file, the mapped blocks being released once garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the values of the dictionary, leaving the block positioned at the codes of the rows.
+     */
+    private static String[] readDictionary(final ByteBuffer block) {
+        final String[] values = new String[block.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            final byte[] value = new byte[block.getShort()];
+            block.get(value);
+            values[i] = new String(value, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static int[] readDates(final ByteBuffer block, final int size) {
+        final int[] epochDays = new int[size];
+        long epochDay = 0;
+        for (int i = 0; i < size; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = block.get();
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            epochDay += (zigzag >>> 1) ^ -(zigzag & 1);
+            epochDays[i] = (int) epochDay;
+        }
+        return epochDays;
+    }
+
+    private static Long toLong(final long value) {
+        return value == StockSnapshot.NULL_LONG ? null : value;
+    }
+
+    private static Double toDouble(final double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
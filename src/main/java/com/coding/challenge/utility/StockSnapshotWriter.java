@@ -0,0 +1,175 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.model.Stock;
+import com.coding.challenge.model.StockSeries;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class writes the stocks added to it as a {@link StockSnapshot}. Each column is
+ * written to a temp file of its own as the stocks are added, so that the stocks are never
+ * held in memory, the temp files being appended to the snapshot once all the stocks were
+ * added. The stocks are best added ordered by ticker and date, for their dates to take a
+ * single byte each.
+ * <p>
+ * A writer is not thread safe.
+ */
+public class StockSnapshotWriter implements Closeable {
+
+    private final Path[] columnFiles = new Path[StockCsvParser.COLUMNS];
+    private final DataOutputStream[] columns = new DataOutputStream[StockCsvParser.COLUMNS];
+    private final Map<String, Integer> tickers = new LinkedHashMap<>();
+    private long previousEpochDay;
+    private int size;
+
+    /**
+     * @param tempDir where to write the columns until the snapshot is written
+     * @throws IOException if the temp files cannot be created
+     */
+    public StockSnapshotWriter(final Path tempDir) throws IOException {
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                columnFiles[i] = Files.createTempFile(tempDir, "snapshot-column-" + i + "-", ".bin");
+                columns[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(columnFiles[i]), 65536));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public void add(final Stock stock) throws IOException {
+        columns[StockMapper.QUARTER_INDEX].writeByte(stock.getQuarter());
+        columns[StockMapper.STOCK_INDEX].writeInt(stock.getTicker() == null ? -1 : tickers.computeIfAbsent(stock.getTicker(), t -> tickers.size()));
+        final long epochDay = stock.getStockDate() == null ? StockSnapshot.NULL_INT : stock.getStockDate().toEpochDay();
+        writeVarLong(columns[StockMapper.DATE_INDEX], epochDay - previousEpochDay);
+        previousEpochDay = epochDay;
+        columns[StockMapper.OPEN_INDEX].writeLong(StockSeries.toCents(stock.getOpen()));
+        columns[StockMapper.HIGH_INDEX].writeLong(StockSeries.toCents(stock.getHigh()));
+        columns[StockMapper.LOW_INDEX].writeLong(StockSeries.toCents(stock.getLow()));
+        columns[StockMapper.CLOSE_INDEX].writeLong(StockSeries.toCents(stock.getClose()));
+        columns[StockMapper.VOLUME_INDEX].writeLong(toLong(stock.getVolume()));
+        columns[StockMapper.PERCENT_CHANGE_PRICE_INDEX].writeDouble(toDouble(stock.getPercentChangePrice()));
+        columns[StockMapper.PERCENT_CHANGE_VOLUME_OVER_LAST_WK_INDEX].writeDouble(toDouble(stock.getPercentChangeVolumeOverLastWeek()));
+        columns[StockMapper.PREVIOUS_WEEKS_VOLUME_INDEX].writeLong(toLong(stock.getPreviousWeeksVolume()));
+        columns[StockMapper.NEXT_WEEKS_OPEN_INDEX].writeLong(StockSeries.toCents(stock.getNextWeeksOpen()));
+        columns[StockMapper.NEXT_WEEKS_CLOSE_INDEX].writeLong(StockSeries.toCents(stock.getNextWeeksClose()));
+        columns[StockMapper.PERCENT_CHANGE_NEXT_WEEKS_PRICE_INDEX].writeDouble(toDouble(stock.getPercentChangeNextWeeksPrice()));
+        columns[StockMapper.DAYS_TO_NEXT_DIVIDEND_INDEX].writeInt(stock.getDaysToNextDividend());
+        columns[StockMapper.PERCENT_RETURN_NEXT_DIVIDEND_INDEX].writeDouble(toDouble(stock.getPercentReturnNextDividend()));
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method writes the snapshot of the stocks added so far to the specified file, then
+     * deletes the temp files of the columns.
+     *
+     * @param file to be written
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeTo(final Path file) throws IOException {
+        for (DataOutputStream column : columns) {
+            column.close();
+        }
+        final byte[] dictionary = dictionary();
+
+        try (FileChannel target = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(StockSnapshot.HEADER_SIZE + columns.length * StockSnapshot.DIRECTORY_ENTRY_SIZE);
+            header.putInt(StockSnapshot.MAGIC)
+                    .putShort(StockSnapshot.VERSION)
+                    .putShort((short) columns.length)
+                    .putInt(size)
+                    .putInt(StockSnapshot.PRICE_SCALE);
+            long offset = header.capacity();
+            for (int i = 0; i < columns.length; i++) {
+                final long length = Files.size(columnFiles[i]) + (i == StockMapper.STOCK_INDEX ? dictionary.length : 0);
+                header.put((byte) i).put(StockSnapshot.ENCODINGS[i]).putLong(offset).putLong(length);
+                offset += length;
+            }
+            header.flip();
+            writeFully(target, header);
+
+            for (int i = 0; i < columns.length; i++) {
+                if (i == StockMapper.STOCK_INDEX) {
+                    writeFully(target, ByteBuffer.wrap(dictionary));
+                }
+                try (FileChannel column = FileChannel.open(columnFiles[i], StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < column.size()) {
+                        position += column.transferTo(position, column.size() - position, target);
+                    }
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Deletes the temp files of the columns, without writing any snapshot.
+     */
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != null) {
+                columns[i].close();
+            }
+            if (columnFiles[i] != null) {
+                Files.deleteIfExists(columnFiles[i]);
+            }
+        }
+    }
+
+    private byte[] dictionary() {
+        int length = 4;
+        final byte[][] values = new byte[tickers.size()][];
+        int i = 0;
+        for (String ticker : tickers.keySet()) {
+            values[i] = ticker.getBytes(StandardCharsets.UTF_8);
+            length += 2 + values[i++].length;
+        }
+        final ByteBuffer dictionary = ByteBuffer.allocate(length).putInt(values.length);
+        for (byte[] value : values) {
+            dictionary.putShort((short) value.length).put(value);
+        }
+        return dictionary.array();
+    }
+
+    private static void writeVarLong(final DataOutputStream out, final long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static long toLong(final Long value) {
+        return value == null ? StockSnapshot.NULL_LONG : value;
+    }
+
+    private static double toDouble(final Double value) {
+        return value == null ? Double.NaN : value;
+    }
+}
@@ -0,0 +1,111 @@
+CREATE TABLE stock_quarter (
+    ticker VARCHAR(10) NOT NULL,
+    quarter_start DATE NOT NULL,
+    first_date DATE NOT NULL,
+    last_date DATE NOT NULL,
+    open NUMERIC(10,2),
+    high NUMERIC(10,2),
+    low NUMERIC(10,2),
+    close NUMERIC(10,2),
+    volume NUMERIC(22,0),
+    average_percent_change_price DECIMAL,
+    stock_count INTEGER NOT NULL,
+    PRIMARY KEY (ticker, quarter_start)
+);
+
+-- Recomputes the specified quarters from their stocks, i.e. a range scan of the (ticker, stock_date) index,
+-- so that stocks overwritten or deleted are accounted for. The quarters are locked in order first, so that
+-- concurrent transactions touching the same quarter recompute it one after the other.
+CREATE FUNCTION refresh_stock_quarters(tickers VARCHAR[], quarter_starts DATE[]) RETURNS VOID LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext(k.ticker), k.quarter_start - DATE '1970-01-01')
+    FROM unnest(tickers, quarter_starts) AS k(ticker, quarter_start)
+    ORDER BY k.ticker, k.quarter_start;
+
+    DELETE FROM stock_quarter q
+    USING unnest(tickers, quarter_starts) AS k(ticker, quarter_start)
+    WHERE q.ticker = k.ticker AND q.quarter_start = k.quarter_start
+      AND NOT EXISTS (SELECT 1 FROM stock s WHERE s.ticker = k.ticker AND s.stock_date >= k.quarter_start AND s.stock_date < k.quarter_start + INTERVAL '3 months');
+
+    INSERT INTO stock_quarter (ticker, quarter_start, first_date, last_date, open, high, low, close, volume, average_percent_change_price, stock_count)
+    SELECT k.ticker, k.quarter_start, a.first_date, a.last_date, a.open, a.high, a.low, a.close, a.volume, a.average_percent_change_price, a.stock_count
+    FROM unnest(tickers, quarter_starts) AS k(ticker, quarter_start)
+    CROSS JOIN LATERAL (
+        SELECT MIN(s.stock_date) AS first_date,
+               MAX(s.stock_date) AS last_date,
+               (ARRAY_AGG(s.open ORDER BY s.stock_date))[1] AS open,
+               MAX(s.high) AS high,
+               MIN(s.low) AS low,
+               (ARRAY_AGG(s.close ORDER BY s.stock_date DESC))[1] AS close,
+               SUM(s.volume) AS volume,
+               AVG(s.percent_change_price) AS average_percent_change_price,
+               COUNT(*) AS stock_count
+        FROM stock s
+        WHERE s.ticker = k.ticker AND s.stock_date >= k.quarter_start AND s.stock_date < k.quarter_start + INTERVAL '3 months'
+        HAVING COUNT(*) > 0
+    ) a
+    ON CONFLICT (ticker, quarter_start) DO UPDATE SET
+        first_date = EXCLUDED.first_date,
+        last_date = EXCLUDED.last_date,
+        open = EXCLUDED.open,
+        high = EXCLUDED.high,
+        low = EXCLUDED.low,
+        close = EXCLUDED.close,
+        volume = EXCLUDED.volume,
+        average_percent_change_price = EXCLUDED.average_percent_change_price,
+        stock_count = EXCLUDED.stock_count;
+END $$;
+
+CREATE FUNCTION stock_quarter_on_insert() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM refresh_stock_quarters(ARRAY_AGG(k.ticker), ARRAY_AGG(k.quarter_start))
+    FROM (SELECT DISTINCT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start
+          FROM new_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL) k;
+    RETURN NULL;
+END $$;
+
+CREATE FUNCTION stock_quarter_on_update() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM refresh_stock_quarters(ARRAY_AGG(k.ticker), ARRAY_AGG(k.quarter_start))
+    FROM (SELECT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start FROM old_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL
+          UNION
+          SELECT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start FROM new_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL) k;
+    RETURN NULL;
+END $$;
+
+CREATE FUNCTION stock_quarter_on_delete() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM refresh_stock_quarters(ARRAY_AGG(k.ticker), ARRAY_AGG(k.quarter_start))
+    FROM (SELECT DISTINCT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start
+          FROM old_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL) k;
+    RETURN NULL;
+END $$;
+
+-- A trigger with transition tables can only handle one event.
+CREATE TRIGGER stock_quarter_insert AFTER INSERT ON stock
+    REFERENCING NEW TABLE AS new_stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_quarter_on_insert();
+
+CREATE TRIGGER stock_quarter_update AFTER UPDATE ON stock
+    REFERENCING OLD TABLE AS old_stocks NEW TABLE AS new_stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_quarter_on_update();
+
+CREATE TRIGGER stock_quarter_delete AFTER DELETE ON stock
+    REFERENCING OLD TABLE AS old_stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_quarter_on_delete();
+
+INSERT INTO stock_quarter (ticker, quarter_start, first_date, last_date, open, high, low, close, volume, average_percent_change_price, stock_count)
+SELECT ticker,
+       date_trunc('quarter', stock_date)::DATE,
+       MIN(stock_date),
+       MAX(stock_date),
+       (ARRAY_AGG(open ORDER BY stock_date))[1],
+       MAX(high),
+       MIN(low),
+       (ARRAY_AGG(close ORDER BY stock_date DESC))[1],
+       SUM(volume),
+       AVG(percent_change_price),
+       COUNT(*)
+FROM stock
+WHERE ticker IS NOT NULL AND stock_date IS NOT NULL
+GROUP BY ticker, date_trunc('quarter', stock_date)::DATE;
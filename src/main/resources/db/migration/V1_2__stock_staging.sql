@@ -0,0 +1,26 @@
+-- Stocks of the uploads being merged, loaded before being merged into the stock table with a single statement.
+-- The table is unlogged, i.e. its rows are neither written to the WAL nor kept after a crash, as they can be
+-- loaded again from their upload, and its columns have the same types as the stock table, so that the staged
+-- stocks compare to the stored ones exactly as they would be stored.
+CREATE UNLOGGED TABLE stock_staging (
+    request_id VARCHAR(36) NOT NULL,
+    line_number BIGINT NOT NULL,
+    quarter NUMERIC(1,0),
+    ticker VARCHAR(10),
+    stock_date DATE,
+    open NUMERIC(10,2),
+    high NUMERIC(10,2),
+    low NUMERIC(10,2),
+    close NUMERIC(10,2),
+    volume NUMERIC(20,0),
+    percent_change_price DECIMAL,
+    percent_change_volume_over_last_week DECIMAL,
+    previous_weeks_volume NUMERIC(20,0),
+    next_weeks_open NUMERIC(10,2),
+    next_weeks_close NUMERIC(10,2),
+    percent_change_next_weeks_price DECIMAL,
+    days_to_next_dividend NUMERIC(5),
+    percent_return_next_dividend DECIMAL
+);
+
+CREATE INDEX stock_staging_request_id ON stock_staging (request_id);
@@ -0,0 +1,14 @@
+-- Progress of the ingest jobs of the uploaded files, committed along with each batch of stocks, so that the
+-- jobs interrupted by a crash or a shutdown resume from their last batch once the application restarts.
+CREATE TABLE ingest_checkpoint (
+    request_id VARCHAR(36) NOT NULL PRIMARY KEY,
+    file_name VARCHAR(255),
+    file_path VARCHAR(4096) NOT NULL,
+    mode VARCHAR(16) NOT NULL,
+    last_line BIGINT NOT NULL DEFAULT 0,
+    byte_offset BIGINT NOT NULL DEFAULT 0,
+    rows_read BIGINT NOT NULL DEFAULT 0,
+    rows_ingested BIGINT NOT NULL DEFAULT 0,
+    error_rows BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
@@ -0,0 +1,144 @@
+-- Moves the stocks into a table partitioned by year of stock_date, so that the date-bounded searches only scan
+-- the partitions of their dates and that the years loaded long ago are no longer vacuumed along with the new ones.
+-- The stocks without a date, and the ones of the years without a partition yet, go to the default partition.
+ALTER TABLE stock RENAME TO stock_unpartitioned;
+ALTER INDEX index_name RENAME TO stock_unpartitioned_ticker_stock_date;
+ALTER SEQUENCE stock_id_seq OWNED BY NONE;
+
+-- The primary key of a partitioned table must include stock_date, which is nullable, hence the id being indexed
+-- without a constraint: As before, its uniqueness comes from the sequence.
+CREATE TABLE stock (
+    id INTEGER NOT NULL DEFAULT nextval('stock_id_seq'),
+    quarter NUMERIC(1,0),
+    ticker VARCHAR(10),
+    stock_date DATE,
+    open NUMERIC(10,2),
+    high NUMERIC(10,2),
+    low NUMERIC(10,2),
+    close NUMERIC(10,2),
+    volume NUMERIC(20,0),
+    percent_change_price DECIMAL,
+    percent_change_volume_over_last_week DECIMAL,
+    previous_weeks_volume NUMERIC(20,0),
+    next_weeks_open NUMERIC(10,2),
+    next_weeks_close NUMERIC(10,2),
+    percent_change_next_weeks_price DECIMAL,
+    days_to_next_dividend NUMERIC(5),
+    percent_return_next_dividend DECIMAL
+) PARTITION BY RANGE (stock_date);
+
+ALTER SEQUENCE stock_id_seq OWNED BY stock.id;
+
+CREATE UNIQUE INDEX index_name ON stock (ticker, stock_date);
+CREATE INDEX stock_id ON stock (id);
+-- The weekly stocks being loaded in date order, a partition is mostly ordered by date: A few pages of BRIN
+-- summaries are then enough to skip most of a partition for a window of dates of all the tickers.
+CREATE INDEX stock_stock_date_brin ON stock USING BRIN (stock_date);
+
+CREATE TABLE stock_default PARTITION OF stock DEFAULT;
+
+-- Creates the partition of the specified year, unless it exists, moving its stocks out of the default partition
+-- first as the partition could not be attached otherwise. The stocks moved being neither inserted into nor
+-- deleted from stock, the stock_quarter triggers do not fire.
+CREATE FUNCTION create_stock_partition(partition_year INTEGER) RETURNS BOOLEAN LANGUAGE plpgsql AS $$
+DECLARE
+    partition_name TEXT := 'stock_y' || partition_year;
+    from_date DATE := make_date(partition_year, 1, 1);
+    to_date DATE := make_date(partition_year + 1, 1, 1);
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('stock_partition'), partition_year);
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE stock INCLUDING DEFAULTS)', partition_name);
+    EXECUTE format('WITH moved AS (DELETE FROM stock_default WHERE stock_date >= %L AND stock_date < %L RETURNING *) INSERT INTO %I SELECT * FROM moved',
+                   from_date, to_date, partition_name);
+    EXECUTE format('ALTER TABLE stock ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', partition_name, from_date, to_date);
+    RETURN TRUE;
+END $$;
+
+-- Creates the partitions of the current year and of the specified number of years ahead, as well as of the years
+-- of the stocks in the default partition, returning how many partitions were created.
+CREATE FUNCTION create_stock_partitions(years_ahead INTEGER) RETURNS INTEGER LANGUAGE plpgsql AS $$
+DECLARE
+    partition_year INTEGER;
+    created INTEGER := 0;
+BEGIN
+    FOR partition_year IN
+        SELECT DISTINCT EXTRACT(YEAR FROM stock_date)::INTEGER FROM stock_default WHERE stock_date IS NOT NULL
+        UNION
+        SELECT generate_series(EXTRACT(YEAR FROM current_date)::INTEGER, EXTRACT(YEAR FROM current_date)::INTEGER + years_ahead)
+        ORDER BY 1
+    LOOP
+        IF create_stock_partition(partition_year) THEN
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END $$;
+
+SELECT create_stock_partition(stock_year)
+FROM (SELECT DISTINCT EXTRACT(YEAR FROM stock_date)::INTEGER AS stock_year FROM stock_unpartitioned WHERE stock_date IS NOT NULL) y
+ORDER BY stock_year;
+
+SELECT create_stock_partitions(1);
+
+-- The quarters being up to date, the stocks are copied before the triggers are created.
+INSERT INTO stock SELECT * FROM stock_unpartitioned;
+
+DROP TABLE stock_unpartitioned;
+
+-- Same as before, but for the end of the quarter being a date rather than a timestamp, so that the partitions of
+-- the other years are pruned from the scans of a quarter.
+CREATE OR REPLACE FUNCTION refresh_stock_quarters(tickers VARCHAR[], quarter_starts DATE[]) RETURNS VOID LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext(k.ticker), k.quarter_start - DATE '1970-01-01')
+    FROM unnest(tickers, quarter_starts) AS k(ticker, quarter_start)
+    ORDER BY k.ticker, k.quarter_start;
+
+    DELETE FROM stock_quarter q
+    USING unnest(tickers, quarter_starts) AS k(ticker, quarter_start)
+    WHERE q.ticker = k.ticker AND q.quarter_start = k.quarter_start
+      AND NOT EXISTS (SELECT 1 FROM stock s WHERE s.ticker = k.ticker AND s.stock_date >= k.quarter_start AND s.stock_date < (k.quarter_start + INTERVAL '3 months')::DATE);
+
+    INSERT INTO stock_quarter (ticker, quarter_start, first_date, last_date, open, high, low, close, volume, average_percent_change_price, stock_count)
+    SELECT k.ticker, k.quarter_start, a.first_date, a.last_date, a.open, a.high, a.low, a.close, a.volume, a.average_percent_change_price, a.stock_count
+    FROM unnest(tickers, quarter_starts) AS k(ticker, quarter_start)
+    CROSS JOIN LATERAL (
+        SELECT MIN(s.stock_date) AS first_date,
+               MAX(s.stock_date) AS last_date,
+               (ARRAY_AGG(s.open ORDER BY s.stock_date))[1] AS open,
+               MAX(s.high) AS high,
+               MIN(s.low) AS low,
+               (ARRAY_AGG(s.close ORDER BY s.stock_date DESC))[1] AS close,
+               SUM(s.volume) AS volume,
+               AVG(s.percent_change_price) AS average_percent_change_price,
+               COUNT(*) AS stock_count
+        FROM stock s
+        WHERE s.ticker = k.ticker AND s.stock_date >= k.quarter_start AND s.stock_date < (k.quarter_start + INTERVAL '3 months')::DATE
+        HAVING COUNT(*) > 0
+    ) a
+    ON CONFLICT (ticker, quarter_start) DO UPDATE SET
+        first_date = EXCLUDED.first_date,
+        last_date = EXCLUDED.last_date,
+        open = EXCLUDED.open,
+        high = EXCLUDED.high,
+        low = EXCLUDED.low,
+        close = EXCLUDED.close,
+        volume = EXCLUDED.volume,
+        average_percent_change_price = EXCLUDED.average_percent_change_price,
+        stock_count = EXCLUDED.stock_count;
+END $$;
+
+-- The statement triggers of a partitioned table see the stocks of all its partitions in their transition tables.
+CREATE TRIGGER stock_quarter_insert AFTER INSERT ON stock
+    REFERENCING NEW TABLE AS new_stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_quarter_on_insert();
+
+CREATE TRIGGER stock_quarter_update AFTER UPDATE ON stock
+    REFERENCING OLD TABLE AS old_stocks NEW TABLE AS new_stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_quarter_on_update();
+
+CREATE TRIGGER stock_quarter_delete AFTER DELETE ON stock
+    REFERENCING OLD TABLE AS old_stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_quarter_on_delete();
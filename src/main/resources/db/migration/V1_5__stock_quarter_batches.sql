@@ -0,0 +1,37 @@
+-- The bindings of a batched statement each running as a statement of their own, the statement triggers fire
+-- once per stock of a batch, each recomputing the quarter of its stock and locking it until the commit. The
+-- batches of stocks therefore defer the triggers for the rest of their transaction, through the stock.quarters
+-- setting, and refresh the quarters of all their stocks at once in the end, locking them in order.
+CREATE OR REPLACE FUNCTION stock_quarter_on_insert() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    IF current_setting('stock.quarters', true) = 'deferred' THEN
+        RETURN NULL;
+    END IF;
+    PERFORM refresh_stock_quarters(ARRAY_AGG(k.ticker), ARRAY_AGG(k.quarter_start))
+    FROM (SELECT DISTINCT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start
+          FROM new_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL) k;
+    RETURN NULL;
+END $$;
+
+CREATE OR REPLACE FUNCTION stock_quarter_on_update() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    IF current_setting('stock.quarters', true) = 'deferred' THEN
+        RETURN NULL;
+    END IF;
+    PERFORM refresh_stock_quarters(ARRAY_AGG(k.ticker), ARRAY_AGG(k.quarter_start))
+    FROM (SELECT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start FROM old_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL
+          UNION
+          SELECT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start FROM new_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL) k;
+    RETURN NULL;
+END $$;
+
+CREATE OR REPLACE FUNCTION stock_quarter_on_delete() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    IF current_setting('stock.quarters', true) = 'deferred' THEN
+        RETURN NULL;
+    END IF;
+    PERFORM refresh_stock_quarters(ARRAY_AGG(k.ticker), ARRAY_AGG(k.quarter_start))
+    FROM (SELECT DISTINCT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start
+          FROM old_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL) k;
+    RETURN NULL;
+END $$;
@@ -0,0 +1,6 @@
+-- Instance of the application whose temp file the checkpoint refers to, so that an instance only resumes its
+-- own jobs, and leaves the ones of the other instances sharing the database alone. The checkpoints recorded
+-- before have no instance, and are resumed by any instance which still has their file.
+ALTER TABLE ingest_checkpoint ADD COLUMN instance_id VARCHAR(255);
+
+CREATE INDEX ingest_checkpoint_instance_id ON ingest_checkpoint (instance_id);
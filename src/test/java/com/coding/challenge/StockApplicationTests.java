@@ -1,6 +1,17 @@
 package com.coding.challenge;
 
+import com.coding.challenge.dto.MergeResult;
 import com.coding.challenge.dto.Stock;
+import com.coding.challenge.dto.StockAck;
+import com.coding.challenge.dto.UploadResult;
+import com.coding.challenge.dto.UpsertResult;
+import com.coding.challenge.model.IngestCheckpoint;
+import com.coding.challenge.model.StockQuarter;
+import com.coding.challenge.repository.IngestCheckpointRepository;
+import com.coding.challenge.repository.StockQuarterRepository;
+import com.coding.challenge.repository.StockRepository;
+import com.coding.challenge.utility.FileHelper;
+import com.coding.challenge.utility.StockRowGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,19 +25,38 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.util.MultiValueMap;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.springSecurity;
 import static org.springframework.test.context.support.TestPropertySourceUtils.addInlinedPropertiesToEnvironment;
 
@@ -39,6 +69,18 @@ class StockApplicationTests {
 
     @Autowired
     private ApplicationContext context;
+    @Autowired
+    private DatabaseClient databaseClient;
+    @Autowired
+    private StockRepository stockRepository;
+    @Autowired
+    private StockQuarterRepository stockQuarterRepository;
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+    @Autowired
+    private FileHelper fileHelper;
+    @Autowired
+    private IngestCheckpointRepository ingestCheckpointRepository;
 
     @Container
     public static GenericContainer postgreSQLContainer = new PostgreSQLContainer("postgres:11.1")
@@ -70,6 +112,20 @@ class StockApplicationTests {
                 .expectStatus().isAccepted();
     }
 
+    @Test
+    public void testUploadContent() throws IOException {
+
+        client
+                .post()
+                .uri("/api/v1/stocks")
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString("username:password".getBytes()))
+                .bodyValue(new ClassPathResource("/dow_jones_index.csv", StockApplicationTests.class))
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody(String.class).value(requestId -> UUID.fromString(requestId));
+    }
+
     @Test
     public void testAddNewRecord() throws IOException {
 
@@ -89,6 +145,72 @@ class StockApplicationTests {
                 .expectStatus().isOk().expectBody().jsonPath("$.ticker").isEqualTo("TEST2");
     }
 
+    @Test
+    public void testAddExistingRecord() throws IOException {
+
+        Stock stock = new Stock();
+        stock.setStock("TEST5");
+        stock.setDate("1/7/2011");
+        stock.setQuarter("1");
+        stock.setClose("$10.00");
+
+        client
+                .post()
+                .uri("/api/v1/stock")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(Mono.just(stock), Stock.class)
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString("username:password".getBytes()))
+                .exchange()
+                .expectStatus().isOk();
+
+        stock.setClose("$11.00");
+        client
+                .post()
+                .uri("/api/v1/stock")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(Mono.just(stock), Stock.class)
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString("username:password".getBytes()))
+                .exchange()
+                .expectStatus().isOk().expectBody().jsonPath("$.close").isEqualTo(11.0);
+
+        client
+                .get()
+                .uri("/api/v1/stock/TEST5")
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString("username:password".getBytes()))
+                .exchange()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].close").isEqualTo(11.0);
+    }
+
+    @Test
+    public void testUpsertStream() throws IOException {
+
+        Stock stock = new Stock();
+        stock.setStock("TEST3");
+        stock.setDate("1/7/2011");
+        stock.setQuarter("1");
+
+        Stock invalidStock = new Stock();
+        invalidStock.setDate("1/7/2011");
+        invalidStock.setQuarter("1");
+
+        client
+                .post()
+                .uri("/api/v1/stocks/stream")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(Flux.just(stock, invalidStock, stock), Stock.class)
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString("username:password".getBytes()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Map.class).value(acks -> assertEquals(
+                        Arrays.asList(StockAck.Status.INSERTED.name(), StockAck.Status.INVALID.name(), StockAck.Status.UPDATED.name()),
+                        acks.stream().map(ack -> ack.get("status")).collect(Collectors.toList())));
+    }
+
     @Test
     public void testGetExistingStock() throws IOException {
 
@@ -100,6 +222,35 @@ class StockApplicationTests {
                 .expectBody().jsonPath("$[0].ticker").isEqualTo("TEST");
     }
 
+    @Test
+    public void testGetStockPageWithFields() throws IOException {
+
+        client
+                .get()
+                .uri("/api/v1/stock/TEST?from=2011-01-01&size=1&fields=close")
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString("username:password".getBytes()))
+                .exchange()
+                .expectBody()
+                .jsonPath("$[0].close").isEqualTo(16.13)
+                .jsonPath("$[0].stockDate").isEqualTo("2011-01-28")
+                .jsonPath("$[0].ticker").doesNotExist();
+    }
+
+    @Test
+    public void testGetQuarters() throws IOException {
+
+        client
+                .get()
+                .uri("/api/v1/stock/TEST/quarters")
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString("username:password".getBytes()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].quarterStart").isEqualTo("2011-01-01")
+                .jsonPath("$[0].close").isEqualTo(16.13)
+                .jsonPath("$[0].stockCount").isEqualTo(1);
+    }
+
     @Test
     public void testGetNonExistingStock() throws IOException {
 
@@ -111,6 +262,204 @@ class StockApplicationTests {
                 .expectBody().jsonPath("$").isEmpty();
     }
 
+    @Test
+    public void testGetStatusOfUnknownUpload() {
+
+        client
+                .get()
+                .uri("/api/v1/status/" + UUID.randomUUID())
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString("username:password".getBytes()))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testPartitionCreatedForStockOfNewYear() {
+        final LocalDate date = LocalDate.of(1975, 3, 7);
+        databaseClient.sql("INSERT INTO stock (quarter, ticker, stock_date, open, close, volume) VALUES (1, 'PART', :date, 10.00, 11.00, 1000)")
+                .bind("date", date)
+                .then()
+                .block();
+        assertEquals("stock_default", partitionOf("PART", date));
+        final List<StockQuarter> quarters = stockQuarterRepository.findByTickerOrderByQuarterStart("PART").collectList().block();
+        assertEquals(1, quarters.size());
+
+        assertTrue(stockRepository.createPartitions(0).block() >= 1);
+        assertEquals("stock_y1975", partitionOf("PART", date));
+        assertEquals(quarters, stockQuarterRepository.findByTickerOrderByQuarterStart("PART").collectList().block());
+    }
+
+    @Test
+    public void testUpsertOfPartitionedStock() {
+        final com.coding.challenge.model.Stock stock = new com.coding.challenge.model.Stock(1, "PART2", LocalDate.of(2011, 1, 7),
+                null, null, null, new BigDecimal("11.00"), 1000L, null, null, null, null, null, null, 0, null);
+        final UpsertResult inserted = stockRepository.upsert(stock).block();
+        assertTrue(inserted.isInserted());
+
+        stock.setClose(new BigDecimal("12.00"));
+        final UpsertResult updated = stockRepository.upsert(stock).block();
+        assertFalse(updated.isInserted());
+        assertEquals(inserted.getStock().getId(), updated.getStock().getId());
+        assertEquals(new BigDecimal("12.00"), updated.getStock().getClose());
+        assertEquals(1L, stockRepository.findStockByTicker("PART2").count().block());
+    }
+
+    @Test
+    public void testQuartersMatchStocks() {
+        final List<com.coding.challenge.model.Stock> stocks = Arrays.asList(
+                quarterStock(LocalDate.of(2011, 1, 7), "10.00"),
+                quarterStock(LocalDate.of(2011, 1, 14), "11.00"),
+                quarterStock(LocalDate.of(2011, 4, 1), "12.00"));
+        stockRepository.insertAll(stocks).as(transactionalOperator::transactional).blockLast();
+        assertQuartersMatchStocks("QTR");
+        assertEquals(2, stockQuarterRepository.findByTickerOrderByQuarterStart("QTR").count().block());
+
+        stocks.get(1).setClose(new BigDecimal("13.00"));
+        stockRepository.upsertAll(stocks).as(transactionalOperator::transactional).blockLast();
+        assertQuartersMatchStocks("QTR");
+        assertEquals(new BigDecimal("13.00"), stockQuarterRepository.findByTickerOrderByQuarterStart("QTR").blockFirst().getClose());
+
+        stocks.get(0).setHigh(new BigDecimal("20.00"));
+        stockRepository.upsert(stocks.get(0)).block();
+        assertQuartersMatchStocks("QTR");
+
+        stockRepository.delete(stocks.get(2)).block();
+        assertQuartersMatchStocks("QTR");
+        assertEquals(1, stockQuarterRepository.findByTickerOrderByQuarterStart("QTR").count().block());
+    }
+
+    @Test
+    public void testMergeOfStagedStocks() {
+        final LocalDate changedDate = LocalDate.of(2011, 2, 4);
+        final LocalDate identicalDate = LocalDate.of(2011, 2, 11);
+        final LocalDate newDate = LocalDate.of(2011, 2, 18);
+        final LocalDate duplicateDate = LocalDate.of(2011, 2, 25);
+        stockRepository.insertAll(Arrays.asList(mergeStock(changedDate, "10.00"), mergeStock(identicalDate, "10.00")))
+                .as(transactionalOperator::transactional)
+                .blockLast();
+        final String identicalXmin = xminOf("MRG", identicalDate);
+
+        final String requestId = UUID.randomUUID().toString();
+        final Map<Long, com.coding.challenge.model.Stock> lines = new LinkedHashMap<>();
+        lines.put(1L, mergeStock(changedDate, "11.00"));
+        lines.put(2L, mergeStock(identicalDate, "10.00"));
+        lines.put(3L, mergeStock(newDate, "12.00"));
+        lines.put(4L, mergeStock(duplicateDate, "13.00"));
+        lines.put(5L, mergeStock(duplicateDate, "14.00"));
+        stockRepository.stageAll(requestId, lines).block();
+        final MergeResult mergeResult = stockRepository.merge(requestId).as(transactionalOperator::transactional).block();
+        stockRepository.deleteStaged(requestId).block();
+
+        assertEquals(2, mergeResult.getInserted());
+        assertEquals(1, mergeResult.getUpdated());
+        assertEquals(2, mergeResult.getUnchanged());
+        assertEquals(0, mergeResult.getConflicted());
+        assertEquals(4L, stockRepository.findStockByTicker("MRG").count().block());
+        assertEquals(new BigDecimal("11.00"), closeOf("MRG", changedDate));
+        assertEquals(new BigDecimal("14.00"), closeOf("MRG", duplicateDate));
+        assertEquals(identicalXmin, xminOf("MRG", identicalDate));
+        assertQuartersMatchStocks("MRG");
+    }
+
+    @Test
+    public void testResumeOfInterruptedIngest() throws IOException {
+        final long rows = 15000;
+        final Path file = Files.createTempFile("resume", ".csv");
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            new StockRowGenerator(7, 0, "RSM").write(writer, rows);
+        }
+        final String requestId = UUID.randomUUID().toString();
+        final String instanceId = "resume-test";
+        ingestCheckpointRepository.create(requestId, instanceId, null, file.toString(), "FILE").block();
+
+        final Disposable interrupted = fileHelper.ingestFile(IngestCheckpoint.of(requestId, instanceId, null, file.toString(), "FILE"), file.toFile())
+                .subscribe();
+        Flux.interval(Duration.ofMillis(10))
+                .concatMap(tick -> checkpointOf(instanceId, requestId))
+                .filter(checkpoint -> checkpoint.getLastLine() > 0)
+                .blockFirst(Duration.ofSeconds(30));
+        interrupted.dispose();
+        final IngestCheckpoint checkpoint = Mono.delay(Duration.ofMillis(500)).then(checkpointOf(instanceId, requestId)).block();
+        assertTrue(checkpoint.getLastLine() > 0 && checkpoint.getLastLine() < rows, "Interrupted after a batch : " + checkpoint);
+
+        final UploadResult uploadResult = fileHelper.ingestFile(checkpoint, file.toFile()).block();
+        ingestCheckpointRepository.deleteById(requestId).block();
+        Files.delete(file);
+
+        assertEquals(0, uploadResult.getTotalErrorRows());
+        assertEquals(rows, uploadResult.getTotalRowsRead());
+        assertEquals(rows, uploadResult.getTotalRowsIngested());
+        assertEquals(rows, countOf("SELECT COUNT(*) AS count FROM stock WHERE ticker LIKE 'RSM%'"));
+        assertEquals(rows, countOf("SELECT COUNT(DISTINCT (ticker, stock_date)) AS count FROM stock WHERE ticker LIKE 'RSM%'"));
+    }
+
+    private long countOf(final String sql) {
+        return databaseClient.sql(sql).map(row -> row.get("count", Long.class)).one().block();
+    }
+
+    private Mono<IngestCheckpoint> checkpointOf(final String instanceId, final String requestId) {
+        return ingestCheckpointRepository.findByInstanceId(instanceId)
+                .filter(checkpoint -> checkpoint.getRequestId().equals(requestId))
+                .next();
+    }
+
+    private static com.coding.challenge.model.Stock mergeStock(final LocalDate date, final String close) {
+        return new com.coding.challenge.model.Stock(1, "MRG", date, new BigDecimal("9.50"), new BigDecimal("15.00"), new BigDecimal("9.00"),
+                new BigDecimal(close), 1000L, 1.5, null, null, null, null, null, 0, null);
+    }
+
+    private String xminOf(final String ticker, final LocalDate date) {
+        return databaseClient.sql("SELECT xmin::text AS xmin FROM stock WHERE ticker = :ticker AND stock_date = :date")
+                .bind("ticker", ticker)
+                .bind("date", date)
+                .map(row -> row.get("xmin", String.class))
+                .one()
+                .block();
+    }
+
+    private BigDecimal closeOf(final String ticker, final LocalDate date) {
+        return databaseClient.sql("SELECT close FROM stock WHERE ticker = :ticker AND stock_date = :date")
+                .bind("ticker", ticker)
+                .bind("date", date)
+                .map(row -> row.get("close", BigDecimal.class))
+                .one()
+                .block();
+    }
+
+    private static com.coding.challenge.model.Stock quarterStock(final LocalDate date, final String close) {
+        return new com.coding.challenge.model.Stock(1, "QTR", date, new BigDecimal("9.50"), new BigDecimal(close), new BigDecimal("9.00"),
+                new BigDecimal(close), 1000L, 1.5, null, null, null, null, null, 0, null);
+    }
+
+    /**
+     * Compares the quarters of the specified ticker with the quarters aggregated from its stocks.
+     */
+    private void assertQuartersMatchStocks(final String ticker) {
+        final Long mismatches = databaseClient.sql("WITH s AS (SELECT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start,"
+                + " MIN(stock_date) AS first_date, MAX(stock_date) AS last_date, (ARRAY_AGG(open ORDER BY stock_date))[1] AS open,"
+                + " MAX(high) AS high, MIN(low) AS low, (ARRAY_AGG(close ORDER BY stock_date DESC))[1] AS close, SUM(volume) AS volume,"
+                + " AVG(percent_change_price) AS average_percent_change_price, COUNT(*) AS stock_count"
+                + " FROM stock WHERE ticker = :ticker GROUP BY 1, 2), q AS (SELECT * FROM stock_quarter WHERE ticker = :ticker)"
+                + " SELECT COUNT(*) AS mismatches FROM s FULL JOIN q ON q.quarter_start = s.quarter_start"
+                + " WHERE (s.first_date, s.last_date, s.open, s.high, s.low, s.close, s.volume, s.average_percent_change_price, s.stock_count)"
+                + " IS DISTINCT FROM (q.first_date, q.last_date, q.open, q.high, q.low, q.close, q.volume, q.average_percent_change_price, q.stock_count)")
+                .bind("ticker", ticker)
+                .map(row -> row.get("mismatches", Long.class))
+                .one()
+                .block();
+        assertEquals(0L, mismatches);
+    }
+
+    private String partitionOf(final String ticker, final LocalDate date) {
+        return databaseClient.sql("SELECT tableoid::regclass::text AS partition FROM stock WHERE ticker = :ticker AND stock_date = :date")
+                .bind("ticker", ticker)
+                .bind("date", date)
+                .map(row -> row.get("partition", String.class))
+                .one()
+                .block();
+    }
+
     private MultiValueMap<String, HttpEntity<?>> generateBody() {
         MultipartBodyBuilder builder = new MultipartBodyBuilder();
         builder.part("file", new ClassPathResource("/dow_jones_index.csv", StockApplicationTests.class));
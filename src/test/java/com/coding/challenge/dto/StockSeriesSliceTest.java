@@ -0,0 +1,57 @@
+package com.coding.challenge.dto;
+
+import com.coding.challenge.model.Stock;
+import com.coding.challenge.model.StockSeries;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StockSeriesSliceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final Stock first = stock(1L, LocalDate.of(2011, 1, 7), new BigDecimal("15.82"), 239655616L, 3.79267);
+    private final Stock second = stock(2L, LocalDate.of(2011, 1, 14), new BigDecimal("16.70"), null, null);
+    private final Stock third = stock(3L, LocalDate.of(2011, 1, 21), null, 242963398L, -4.42849);
+
+    private final StockSeries series = StockSeries.of("AA", 0L, Arrays.asList(third, first, second));
+
+    @Test
+    public void testSameJsonAsStocks() throws Exception {
+        assertEquals(
+                objectMapper.writeValueAsString(Arrays.asList(first, second, third)),
+                objectMapper.writeValueAsString(new StockSeriesSlice(series, 0, 3, null)));
+    }
+
+    @Test
+    public void testFields() throws Exception {
+        final List<String> fields = Arrays.asList("open", "volume", StockSeriesSlice.STOCK_DATE);
+        assertEquals(
+                "[{\"open\":16.70,\"volume\":null,\"stockDate\":\"2011-01-14\"}]",
+                objectMapper.writeValueAsString(new StockSeriesSlice(series, 1, 2, fields)));
+    }
+
+    @Test
+    public void testIndexes() {
+        assertEquals(0, series.indexOf(LocalDate.of(2011, 1, 1)));
+        assertEquals(1, series.indexOf(LocalDate.of(2011, 1, 14)));
+        assertEquals(2, series.indexAfter(LocalDate.of(2011, 1, 14)));
+        assertEquals(3, series.indexAfter(LocalDate.of(2011, 1, 21)));
+    }
+
+    private static Stock stock(final Long id, final LocalDate date, final BigDecimal price, final Long volume, final Double percent) {
+        final Stock stock = new Stock(1, "AA", date, price, price, price, price, volume, percent, percent, volume, price, price, percent, 26, percent);
+        stock.setId(id);
+        return stock;
+    }
+}
@@ -0,0 +1,70 @@
+package com.coding.challenge.dto;
+
+import com.coding.challenge.utility.ErrorSink;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UploadResultAccumulatorTest {
+
+    private final List<String> written = new ArrayList<>();
+
+    private final ErrorSink errorSink = new ErrorSink() {
+        @Override
+        public void write(final Long lineNumber, final ValidationError validationError) {
+            written.add(lineNumber + ":" + validationError.getFieldName());
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Test
+    public void testKeepsTheFirstValidationErrorsOnly() {
+        final UploadResultAccumulator accumulator = new UploadResultAccumulator(null, 3, errorSink);
+        accumulator.accumulate(new LineResult(1L, null, null, true, null));
+        accumulator.accumulate(new LineResult(2L, null, Arrays.asList(
+                new ValidationError("Quarter", "Quarter must be a positive, non-zero value."),
+                new ValidationError("Ticker", "Ticker must be specified."))));
+        accumulator.accumulate(new LineResult(3L, null, Arrays.asList(
+                new ValidationError("Date", "Date must be specified."),
+                new ValidationError("Ticker", "Ticker must be specified."))));
+        accumulator.accumulate(new LineResult(4L, null, Collections.singletonList(new ValidationError("Date", "Date must be specified."))));
+
+        final UploadResult uploadResult = accumulator.toUploadResult();
+        assertEquals(UploadResult.Status.ERROR, uploadResult.getStatus());
+        assertEquals(4, uploadResult.getTotalRowsRead());
+        assertEquals(1, uploadResult.getTotalRowsIngested());
+        assertEquals(3, uploadResult.getTotalErrorRows());
+        assertEquals(5, accumulator.getTotalValidationErrors());
+        assertEquals(Arrays.asList("Quarter", "Ticker", "Date"), fieldNames(uploadResult.getValidationErrors()));
+        assertEquals(Arrays.asList("3:Ticker", "4:Date"), written);
+    }
+
+    @Test
+    public void testResumedCountersAddUp() {
+        final UploadResultAccumulator accumulator = new UploadResultAccumulator(null, 0, errorSink).resumed(10, 8, 2);
+        accumulator.accumulate(new LineResult(11L, null, null, true, null));
+        accumulator.accumulate(new LineResult(12L, null, Collections.singletonList(new ValidationError("Date", "Date must be specified."))));
+
+        final UploadResult uploadResult = accumulator.toUploadResult();
+        assertEquals(UploadResult.Status.ERROR, uploadResult.getStatus());
+        assertEquals(12, uploadResult.getTotalRowsRead());
+        assertEquals(9, uploadResult.getTotalRowsIngested());
+        assertEquals(3, uploadResult.getTotalErrorRows());
+        assertEquals(Collections.emptyList(), uploadResult.getValidationErrors());
+        assertEquals(Collections.singletonList("12:Date"), written);
+    }
+
+    private static List<String> fieldNames(final List<ValidationError> validationErrors) {
+        final List<String> fieldNames = new ArrayList<>();
+        validationErrors.forEach(validationError -> fieldNames.add(validationError.getFieldName()));
+        return fieldNames;
+    }
+}
@@ -0,0 +1,46 @@
+package com.coding.challenge.event;
+
+import com.coding.challenge.dto.LineResult;
+import com.coding.challenge.dto.UploadProgress;
+import com.coding.challenge.dto.UploadResult;
+import com.coding.challenge.dto.UploadResultAccumulator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadProgressReporterTest {
+
+    private final List<UploadProgressEvent> events = new ArrayList<>();
+
+    private final UploadProgressReporter reporter = new UploadProgressReporter(event -> events.add((UploadProgressEvent) event), "id", 1000, 60000);
+
+    @Test
+    public void testReportsTheFailureAsAnError() {
+        final UploadResultAccumulator accumulator = new UploadResultAccumulator(null, 0, null);
+        reporter.started(accumulator);
+        accumulator.accumulate(new LineResult(1L, null, null, true, null));
+        reporter.failed(accumulator);
+
+        assertEquals(2, events.size());
+        assertFalse(events.get(0).getComplete());
+        final UploadProgress progress = events.get(1).getProgress();
+        assertTrue(events.get(1).getComplete());
+        assertEquals(UploadProgress.State.FAILED, progress.getState());
+        assertEquals(UploadResult.Status.ERROR, progress.getStatus());
+        assertEquals(1, progress.getTotalRowsRead());
+    }
+
+    @Test
+    public void testReportsTheInterruptionAsFinished() {
+        final UploadResultAccumulator accumulator = new UploadResultAccumulator(null, 0, null);
+        reporter.interrupted(accumulator);
+
+        assertTrue(events.get(0).getComplete());
+        assertEquals(UploadProgress.State.INTERRUPTED, events.get(0).getProgress().getState());
+    }
+}
@@ -0,0 +1,82 @@
+package com.coding.challenge.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorrelationsTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testSameValuesAsPairwise() {
+        final Random random = new Random(42);
+        final double[][] series = new double[Correlations.TILE_SIZE * 2 + 5][120];
+        for (int i = 0; i < series.length; i++) {
+            for (int t = 0; t < series[i].length; t++) {
+                series[i][t] = random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian() * 3 + (i % 7) * series[0][t] / 10;
+            }
+        }
+
+        final Correlations correlations = Correlations.compute(series, new ForkJoinPool(4));
+
+        for (int i = 0; i < series.length; i++) {
+            for (int j = 0; j < series.length; j++) {
+                final double[] expected = pairwise(series[i], series[j]);
+                assertEquals(expected[0], correlations.getCovariances()[i][j], DELTA);
+                assertEquals(expected[1], correlations.getCorrelations()[i][j], DELTA);
+            }
+            assertEquals(1d, correlations.getCorrelations()[i][i], DELTA);
+        }
+    }
+
+    @Test
+    public void testNoValueWithoutCommonWeeks() {
+        final double[][] series = {
+                {1, 2, Double.NaN, Double.NaN},
+                {Double.NaN, 3, 4, 5},
+                {7, 7, 7, 7}
+        };
+
+        final Correlations correlations = Correlations.compute(series, ForkJoinPool.commonPool());
+
+        assertTrue(Double.isNaN(correlations.getCovariances()[0][1]));
+        assertTrue(Double.isNaN(correlations.getCorrelations()[0][1]));
+        assertEquals(0d, correlations.getCovariances()[0][2], DELTA);
+        assertTrue(Double.isNaN(correlations.getCorrelations()[0][2]));
+    }
+
+    /**
+     * @return covariance and correlation of the values both series have, computed from their means
+     */
+    private static double[] pairwise(final double[] x, final double[] y) {
+        int count = 0;
+        double meanX = 0;
+        double meanY = 0;
+        for (int t = 0; t < x.length; t++) {
+            if (!Double.isNaN(x[t]) && !Double.isNaN(y[t])) {
+                count++;
+                meanX += x[t];
+                meanY += y[t];
+            }
+        }
+        meanX /= count;
+        meanY /= count;
+
+        double coMoment = 0;
+        double varianceX = 0;
+        double varianceY = 0;
+        for (int t = 0; t < x.length; t++) {
+            if (!Double.isNaN(x[t]) && !Double.isNaN(y[t])) {
+                coMoment += (x[t] - meanX) * (y[t] - meanY);
+                varianceX += (x[t] - meanX) * (x[t] - meanX);
+                varianceY += (y[t] - meanY) * (y[t] - meanY);
+            }
+        }
+        return new double[]{coMoment / (count - 1), coMoment / Math.sqrt(varianceX * varianceY)};
+    }
+}
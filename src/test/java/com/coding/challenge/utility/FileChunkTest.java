@@ -0,0 +1,85 @@
+package com.coding.challenge.utility;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileChunkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testChunksEndAfterLineFeed() throws IOException {
+        final String content = "header\nline 1\r\nline 2 é\n\nline 4";
+        final Path file = Files.write(tempDir.resolve("chunks.csv"), content.getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final List<FileChunk> chunks = FileChunk.split(channel, 4);
+
+            assertEquals(4, chunks.size());
+            final StringBuilder decoded = new StringBuilder();
+            for (FileChunk chunk : chunks) {
+                final String chars = chunk.decode(channel).toString();
+                assertEquals(chunks.indexOf(chunk) == chunks.size() - 1, !chars.endsWith("\n"));
+                decoded.append(chars);
+            }
+            assertEquals(content, decoded.toString());
+        }
+    }
+
+    @Test
+    public void testSingleChunk() throws IOException {
+        final Path file = Files.write(tempDir.resolve("chunk.csv"), "header\nline 1\n".getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final List<FileChunk> chunks = FileChunk.split(channel, 1024);
+
+            assertEquals(1, chunks.size());
+            assertEquals(0L, chunks.get(0).getPosition());
+            assertEquals(Files.size(file), chunks.get(0).getSize());
+        }
+    }
+
+    @Test
+    public void testMalformedChunkIsReported() throws IOException {
+        final byte[] content = {'o', 'k', '\n', 'b', 'a', 'd', ' ', (byte) 0xA9, '\n'};
+        final Path file = Files.write(tempDir.resolve("malformed.csv"), content);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final List<FileChunk> chunks = FileChunk.split(channel, 2);
+
+            assertEquals("ok\n", chunks.get(0).decode(channel).toString());
+            assertThrows(CharacterCodingException.class, () -> chunks.get(1).decode(channel));
+        }
+    }
+
+    @Test
+    public void testMalformedLinesAreReported() throws IOException {
+        final byte[] content = {'o', 'k', '\r', '\n', 'b', 'a', 'd', ' ', (byte) 0xA9, '\r', '\n', '\r', 'l', 'a', 's', 't'};
+        final Path file = Files.write(tempDir.resolve("malformed.csv"), content);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final Set<Integer> malformedLines = new HashSet<>();
+            final List<String> lines = FileChunk.split(channel, 1024).get(0).decodeLines(channel, malformedLines);
+
+            assertEquals(Arrays.asList("ok", "bad \uFFFD", "", "last"), lines);
+            assertEquals(Collections.singleton(1), malformedLines);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.dto.ValidationError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class FileErrorSinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testWritesOneLinePerValidationError() throws IOException {
+        final Path path = tempDir.resolve("errors.csv");
+        final FileErrorSink sink = new FileErrorSink(path);
+        sink.close();
+        assertFalse(Files.exists(path));
+
+        final FileErrorSink errorSink = new FileErrorSink(path);
+        errorSink.write(2L, new ValidationError("Quarter", "Quarter must be a positive, non-zero value."));
+        errorSink.write(2L, new ValidationError("Ticker", "Ticker \"AA\" is unknown."));
+        errorSink.close();
+
+        final FileErrorSink resumed = new FileErrorSink(path);
+        resumed.write(5L, new ValidationError("Date", "Date must be specified."));
+        resumed.close();
+
+        assertEquals(Arrays.asList(
+                "line_number,field_name,message",
+                "2,Quarter,\"Quarter must be a positive, non-zero value.\"",
+                "2,Ticker,\"Ticker \"\"AA\"\" is unknown.\"",
+                "5,Date,\"Date must be specified.\""
+        ), Files.readAllLines(path, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDropsTheErrorsOnceAWriteFailed() {
+        final Path path = tempDir.resolve("missing").resolve("errors.csv");
+        final FileErrorSink errorSink = new FileErrorSink(path);
+        errorSink.write(2L, new ValidationError("Quarter", "Quarter must be a positive, non-zero value."));
+        errorSink.write(3L, new ValidationError("Date", "Date must be specified."));
+        errorSink.close();
+
+        assertFalse(Files.exists(path));
+    }
+}
@@ -0,0 +1,54 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.dto.LineResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.util.function.Tuples;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileHelperMetricsTest {
+
+    private MeterRegistry registry;
+    private FileHelper fileHelper;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        fileHelper = new FileHelper(null, null, null, null, registry);
+        fileHelper.initMetrics();
+    }
+
+    @Test
+    public void testRegistersTheStagesAndTheRows() {
+        for (String stage : Arrays.asList("map", "validate", "insert", "staging", "merge")) {
+            assertNotNull(registry.find("stock.ingest.stage").tag("stage", stage).timer(), stage);
+        }
+        for (String outcome : Arrays.asList("ingested", "rejected", "unchanged", "conflicted")) {
+            assertNotNull(registry.find("stock.ingest.rows").tag("outcome", outcome).counter(), outcome);
+        }
+    }
+
+    @Test
+    public void testTimesASampleOfTheLines() {
+        final StockCsvParser parser = new StockCsvParser();
+        final StockRowGenerator generator = new StockRowGenerator(42, 0);
+        final int lines = 10 * FileHelper.SAMPLED_LINES;
+        for (long lineNumber = 1; lineNumber <= lines; lineNumber++) {
+            final LineResult lineResult = fileHelper.validateStock(fileHelper.mapStock(parser, Tuples.of(lineNumber, generator.next())));
+            assertTrue(lineResult.isInsertable());
+        }
+
+        final Timer mapTimer = registry.get("stock.ingest.stage").tag("stage", "map").timer();
+        final Timer validateTimer = registry.get("stock.ingest.stage").tag("stage", "validate").timer();
+        assertEquals(lines / FileHelper.SAMPLED_LINES, mapTimer.count());
+        assertEquals(lines / FileHelper.SAMPLED_LINES, validateTimer.count());
+    }
+}
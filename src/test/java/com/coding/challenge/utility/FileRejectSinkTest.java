@@ -0,0 +1,76 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.dto.LineResult;
+import com.coding.challenge.dto.ValidationError;
+import com.coding.challenge.exception.UnparseableFileException;
+import com.coding.challenge.model.Stock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class FileRejectSinkTest {
+
+    private static final String LINE = "0,AA,1/7/2011,$15.82,$16.72,$15.78,$16.42,239655616,3.79267,,,$16.71,$15.97,-4.42849,26,0.182704";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testWritesRejectedLinesOnly() throws IOException {
+        final Path path = tempDir.resolve("rejects.csv");
+        final Stock stock = StockMapper.toStock(new StockCsvParser().parse(LINE));
+        final FileRejectSink sink = new FileRejectSink(path);
+
+        sink.write(new LineResult(1L, stock, null, true, null, LINE));
+        assertFalse(Files.exists(path));
+
+        sink.write(new LineResult(2L, stock, Arrays.asList(
+                new ValidationError("Quarter", "Quarter must be a positive, non-zero value."),
+                new ValidationError("Ticker", "Ticker \"AA\" is unknown.")), null, null, LINE));
+        sink.write(new LineResult(3L, stock, null, false, new IllegalStateException("duplicate key\nvalue")));
+        sink.write(new LineResult(new UnparseableFileException(4L, "1,AA", new IllegalArgumentException("Line only has 2 values"))));
+        sink.close();
+
+        assertEquals(Arrays.asList(
+                FileRejectSink.HEADER,
+                LINE + ",2,\"Quarter: Quarter must be a positive, non-zero value. Ticker: Ticker \"\"AA\"\" is unknown.\"",
+                LINE + ",3,\"duplicate key value\"",
+                "1,AA,,,,,,,,,,,,,,,4,\"Line only has 2 values\""
+        ), Files.readAllLines(path, StandardCharsets.UTF_8));
+
+        final LineResult rejected = new LineResult(2L, stock, Collections.singletonList(new ValidationError("Date", "Date must be specified.")));
+        final FileRejectSink resumed = new FileRejectSink(path);
+        resumed.write(rejected);
+        resumed.close();
+
+        assertEquals(5, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void testColumns() {
+        assertEquals(16, FileRejectSink.columns(LINE));
+        assertEquals(1, FileRejectSink.columns(""));
+        assertEquals(3, FileRejectSink.columns("1,\"A,A\",2"));
+    }
+
+    @Test
+    public void testRejectedLinesCanBeUploadedAgain() throws IOException {
+        final Path path = tempDir.resolve("rejects.csv");
+        final FileRejectSink sink = new FileRejectSink(path);
+        sink.write(new LineResult(2L, StockMapper.toStock(new StockCsvParser().parse(LINE)),
+                Collections.singletonList(new ValidationError("Quarter", "Quarter must be a positive, non-zero value.")), null, null, LINE));
+        sink.close();
+
+        final String fixed = "1" + Files.readAllLines(path, StandardCharsets.UTF_8).get(1).substring(1);
+        assertEquals(1, StockMapper.toStock(new StockCsvParser().parse(fixed)).getQuarter());
+    }
+}
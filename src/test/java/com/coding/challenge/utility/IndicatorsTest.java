@@ -0,0 +1,115 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.exception.InvalidQueryException;
+import com.coding.challenge.model.Stock;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IndicatorsTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testSameValuesAsRecomputed() {
+        final List<Stock> stocks = stocks(200);
+        final Indicators.Indicator sma = Indicators.of("sma20");
+        final Indicators.Indicator ema = Indicators.of("ema12");
+        final Indicators.Indicator vwap = Indicators.of("vwap");
+        final Indicators.Indicator vol = Indicators.of("vol");
+
+        double expectedEma = 0;
+        for (int i = 0; i < stocks.size(); i++) {
+            final Stock stock = stocks.get(i);
+            final List<Stock> seen = stocks.subList(0, i + 1);
+
+            final Double smaValue = sma.next(stock);
+            if (i < 19) {
+                assertNull(smaValue);
+            } else {
+                assertEquals(average(closes(seen.subList(i - 19, i + 1))), smaValue, DELTA);
+            }
+
+            final Double emaValue = ema.next(stock);
+            if (i < 11) {
+                assertNull(emaValue);
+            } else {
+                expectedEma = i == 11 ? average(closes(seen)) : expectedEma + 2d / 13 * (stock.getClose().doubleValue() - expectedEma);
+                assertEquals(expectedEma, emaValue, DELTA);
+            }
+
+            double priceVolume = 0;
+            double volume = 0;
+            for (Stock s : seen) {
+                priceVolume += (s.getHigh().doubleValue() + s.getLow().doubleValue() + s.getClose().doubleValue()) / 3 * s.getVolume();
+                volume += s.getVolume();
+            }
+            assertEquals(priceVolume / volume, vwap.next(stock), DELTA);
+
+            final Double volValue = vol.next(stock);
+            if (i < 20) {
+                assertNull(volValue);
+            } else {
+                final List<Double> closes = closes(seen.subList(i - 20, i + 1));
+                final List<Double> returns = new ArrayList<>();
+                for (int j = 1; j < closes.size(); j++) {
+                    returns.add(Math.log(closes.get(j) / closes.get(j - 1)));
+                }
+                final double mean = average(returns);
+                final double variance = returns.stream().mapToDouble(r -> (r - mean) * (r - mean)).sum() / (returns.size() - 1);
+                assertEquals(Math.sqrt(variance), volValue, DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testMissingCloseIsSkipped() {
+        final Indicators.Indicator sma = Indicators.of("sma2");
+        final List<Stock> stocks = stocks(3);
+        stocks.get(1).setClose(null);
+
+        assertNull(sma.next(stocks.get(0)));
+        assertNull(sma.next(stocks.get(1)));
+        assertEquals((stocks.get(0).getClose().doubleValue() + stocks.get(2).getClose().doubleValue()) / 2, sma.next(stocks.get(2)), DELTA);
+    }
+
+    @Test
+    public void testInvalidMetrics() {
+        for (String metric : Arrays.asList("sma", "sma0", "sma1001", "sma99999999999", "ema", "vwap5", "vol1", "rsi14", "SMA20", "")) {
+            assertThrows(InvalidQueryException.class, () -> Indicators.of(metric), metric);
+        }
+    }
+
+    private static List<Stock> stocks(final int count) {
+        final Random random = new Random(42);
+        final List<Stock> stocks = new ArrayList<>();
+        double close = 50;
+        for (int i = 0; i < count; i++) {
+            close = Math.max(1, close * (1 + (random.nextDouble() - 0.5) / 10));
+            final BigDecimal price = BigDecimal.valueOf(Math.round(close * 100), 2);
+            stocks.add(new Stock(1, "TEST", LocalDate.of(2011, 1, 7).plusWeeks(i),
+                    price, price.add(BigDecimal.ONE), price.subtract(BigDecimal.ONE), price,
+                    1000L + random.nextInt(100_000), null, null, null, null, null, null, 0, null));
+        }
+        return stocks;
+    }
+
+    private static List<Double> closes(final List<Stock> stocks) {
+        final List<Double> closes = new ArrayList<>();
+        stocks.forEach(stock -> closes.add(stock.getClose().doubleValue()));
+        return closes;
+    }
+
+    private static double average(final List<Double> values) {
+        return values.stream().mapToDouble(Double::doubleValue).average().orElse(Double.NaN);
+    }
+}
@@ -0,0 +1,76 @@
+package com.coding.challenge.utility;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LineReaderTest {
+
+    private static final String CONTENT = "header\nline 1\r\nline 2 é\r\rline 4\n\nline 6";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReadsLinesLikeBufferedReader() throws IOException {
+        final Path file = Files.write(tempDir.resolve("lines.csv"), CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Arrays.asList("header", "line 1", "line 2 é", "", "line 4", "", "line 6"), readLines(file, 0));
+    }
+
+    @Test
+    public void testResumesFromTheOffsetOfAnyLine() throws IOException {
+        final Path file = Files.write(tempDir.resolve("lines.csv"), CONTENT.getBytes(StandardCharsets.UTF_8));
+        final List<String> lines = readLines(file, 0);
+
+        final List<Long> offsets = new ArrayList<>();
+        try (LineReader reader = LineReader.open(file, 0)) {
+            while (reader.readLine() != null) {
+                offsets.add(reader.getOffset());
+            }
+        }
+        assertEquals(Files.size(file), offsets.get(offsets.size() - 1).longValue());
+
+        for (int i = 0; i < offsets.size(); i++) {
+            assertEquals(lines.subList(i + 1, lines.size()), readLines(file, offsets.get(i)), "Resumed after line " + i);
+        }
+    }
+
+    @Test
+    public void testReportsTheLinesWhichAreNotValidUtf8() throws IOException {
+        final byte[] content = {'o', 'k', '\n', 'b', 'a', 'd', ' ', (byte) 0xA9, '\n', (byte) 0xC3, (byte) 0xA9};
+        final Path file = Files.write(tempDir.resolve("malformed.csv"), content);    // A lone continuation byte, then a valid é.
+
+        final List<Boolean> malformed = new ArrayList<>();
+        final List<String> lines = new ArrayList<>();
+        try (LineReader reader = LineReader.open(file, 0)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                malformed.add(reader.isMalformed());
+            }
+        }
+        assertEquals(Arrays.asList(false, true, false), malformed);
+        assertEquals(Arrays.asList("ok", "bad \ufffd", "é"), lines);
+    }
+
+    private static List<String> readLines(final Path file, final long offset) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        try (LineReader reader = LineReader.open(file, offset)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
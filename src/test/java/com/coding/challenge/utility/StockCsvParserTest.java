@@ -0,0 +1,60 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.model.Stock;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StockCsvParserTest {
+
+    private final StockCsvParser parser = new StockCsvParser();
+
+    @Test
+    public void testSameStockAsCsvFormat() throws IOException {
+        assertSameStock("1,AA,1/7/2011,$15.82,$16.72,$15.78,$16.42,239655616,3.79267,,,$16.71,$15.97,-4.42849,26,0.182704");
+        assertSameStock("2, AA ,1/14/2011 ,$16.71,$16.71,$15.64,$15.97,242963398,-4.42849,1.380223028,239655616,$16.19,$15.79,-2.47066,19,0.187852");
+        assertSameStock("1,\"AA\",\"1/7/2011\",\"$15.82\",$16.72,$15.78,$16.42,239655616,3.79267,,,$16.71,$15.97,-4.42849,26,0.182704,extra");
+        assertSameStock("1,\"A\"\"A\" ,1/7/2011,$15.82,$16.72,$15.78,$16.42,239655616,3.79267,,,$16.71,$15.97,-4.42849,26,0.182704");
+        assertSameStock(",,,,,,,,,,,,,,7,");
+    }
+
+    @Test
+    public void testMalformedLines() {
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("1,AA,1/7/2011"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("1,\"AA,1/7/2011,,,,,,,,,,,,,"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("1,\"AA\"B,1/7/2011,,,,,,,,,,,,,"));
+    }
+
+    private void assertSameStock(String line) throws IOException {
+        assertEquals(toStock(line), StockMapper.toStock(parser.parse(line)));
+    }
+
+    private static Stock toStock(String line) throws IOException {
+        CSVRecord csvRecord = CSVParser.parse(line, CSVFormat.DEFAULT.withHeader(
+                StockMapper.QUARTER,
+                StockMapper.STOCK,
+                StockMapper.DATE,
+                StockMapper.OPEN,
+                StockMapper.HIGH,
+                StockMapper.LOW,
+                StockMapper.CLOSE,
+                StockMapper.VOLUME,
+                StockMapper.PERCENT_CHANGE_PRICE,
+                StockMapper.PERCENT_CHANGE_VOLUME_OVER_LAST_WK,
+                StockMapper.PREVIOUS_WEEKS_VOLUME,
+                StockMapper.NEXT_WEEKS_OPEN,
+                StockMapper.NEXT_WEEKS_CLOSE,
+                StockMapper.PERCENT_CHANGE_NEXT_WEEKS_PRICE,
+                StockMapper.DAYS_TO_NEXT_DIVIDEND,
+                StockMapper.PERCENT_RETURN_NEXT_DIVIDEND
+        ).withTrim()).getRecords().get(0);
+        return StockMapper.toStock(csvRecord);
+    }
+}
@@ -0,0 +1,69 @@
+package com.coding.challenge.utility;
+
+import io.r2dbc.spi.Row;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StockExportWriterTest {
+
+    private static final Object[] VALUES = {
+            new BigDecimal("1"), "AA", LocalDate.of(2011, 1, 7), new BigDecimal("15.82"), new BigDecimal("16.72"),
+            new BigDecimal("15.78"), new BigDecimal("16.42"), new BigDecimal("239655616"), new BigDecimal("3.79267"),
+            null, null, new BigDecimal("16.71"), new BigDecimal("15.97"), new BigDecimal("-4.42849"),
+            new BigDecimal("26"), new BigDecimal("0.182704")
+    };
+
+    @Test
+    public void testCsvLineAsUploaded() {
+        assertEquals("1,AA,1/7/2011,$15.82,$16.72,$15.78,$16.42,239655616,3.79267,,,$16.71,$15.97,-4.42849,26,0.182704\n",
+                StockExportWriter.toCsvLine(row(VALUES)));
+    }
+
+    @Test
+    public void testCsvLineRoundTrip() {
+        final Object[] values = VALUES.clone();
+        values[1] = "A,\"B\"";
+        final String line = StockExportWriter.toCsvLine(row(values));
+
+        final StockCsvParser parser = new StockCsvParser().parse(line.substring(0, line.length() - 1));
+        assertEquals("A,\"B\"", parser.get(StockMapper.STOCK_INDEX));
+        assertEquals("$16.42", parser.get(StockMapper.CLOSE_INDEX));
+    }
+
+    @Test
+    public void testCsvLineOfStockAsUploaded() {
+        final String line = "1,AA,1/7/2011,$15.82,$16.72,$15.78,$16.42,239655616,3.79267,,,$16.71,$15.97,-4.42849,26,0.182704";
+
+        assertEquals(line + "\n", StockExportWriter.toCsvLine(StockMapper.toStock(new StockCsvParser().parse(line))));
+    }
+
+    @Test
+    public void testJsonLine() {
+        final Object[] values = VALUES.clone();
+        values[1] = "A\"\\\n";
+        final String line = StockExportWriter.toJsonLine(row(values));
+
+        assertEquals("{\"quarter\":\"1\",\"stock\":\"A\\\"\\\\\\u000a\",\"date\":\"1/7/2011\",\"open\":\"$15.82\"", line.substring(0, line.indexOf(",\"high\"")));
+        assertEquals(",\"percentChangeVolumeOverLastWeek\":null,\"previousWeeksVolume\":null,", line.substring(line.indexOf(",\"percentChangeVolumeOverLastWeek\""), line.indexOf("\"nextWeeksOpen\"")));
+        assertEquals("\"percentReturnNextDividend\":\"0.182704\"}\n", line.substring(line.lastIndexOf("\"percentReturnNextDividend\"")));
+    }
+
+    private static Row row(final Object[] values) {
+        return new Row() {
+            @Override
+            public <T> T get(final int index, final Class<T> type) {
+                return type.cast(values[index]);
+            }
+
+            @Override
+            public <T> T get(final String name, final Class<T> type) {
+                throw new UnsupportedOperationException(Arrays.toString(values));
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package com.coding.challenge.utility;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StockMapperTest {
+
+    private static final List<String> NUMBERS = Arrays.asList(
+            "0", "-0", "+7", "15.82", "$15.82", "-$1.5", "$-1.5", "16", "16.", ".5", "-0.00", "0007.10",
+            "3.79267", "-4.42849", "1.380223028", "999999999999999", "1234567890.12345", "1.5E3", "NaN", "0x1p3");
+
+    private static final List<String> DATES = Arrays.asList(
+            "1/7/2011", "12/31/2011", "01/07/2011", "2/29/2012", "2/29/2011", "2/30/2011", "13/1/2011",
+            "1/7/11", "1/7/02011", "1/7/0000", "001/7/2011", "1/007/2011", "1-7-2011");
+
+    @Test
+    public void testSameNumbersAsJdk() {
+        for (String value : NUMBERS) {
+            assertSame(() -> Integer.parseInt(value), () -> StockMapper.parseInt(value, 0, value.length()));
+            assertSame(() -> Long.parseLong(value), () -> StockMapper.parseLong(value, 0, value.length()));
+            assertSame(() -> Double.parseDouble(value), () -> StockMapper.parseDouble(value, 0, value.length()));
+            assertSame(() -> new BigDecimal(value.replace("$", "")), () -> StockMapper.parsePrice(value, 0, value.length()));
+        }
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final String number = String.format("%.6f", (random.nextDouble() - 0.5) * 1000);
+            final String value = number.substring(0, Math.min(number.length(), 2 + random.nextInt(8)));
+            assertEquals(Double.parseDouble(value), StockMapper.parseDouble(value, 0, value.length()), value);
+            assertEquals(new BigDecimal(value), StockMapper.parsePrice("$" + value, 0, value.length() + 1), value);
+        }
+    }
+
+    @Test
+    public void testSameDatesAsFormatter() {
+        for (String value : DATES) {
+            assertSame(() -> LocalDate.parse(value, DateTimeFormatter.ofPattern("M/d/yyyy")), () -> StockMapper.parseDate(value, 0, value.length()));
+        }
+    }
+
+    private static <T> void assertSame(Decoder<T> expected, Decoder<T> actual) {
+        T expectedValue;
+        try {
+            expectedValue = expected.decode();
+        } catch (RuntimeException e) {
+            assertThrows(e.getClass(), (Executable) actual::decode);
+            return;
+        }
+        assertEquals(expectedValue, actual.decode());
+    }
+
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T decode();
+    }
+}
@@ -0,0 +1,156 @@
+package com.coding.challenge.utility;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class generates lines shaped like the ones of <code>dow_jones_index.csv</code>: Every
+ * week, one line per ticker of the Dow Jones, whose prices follow a random walk and whose
+ * derived columns are consistent with the previous and next weeks, the first week of a ticker
+ * missing its previous week columns as in the original file.
+ * <p>
+ * A given ratio of the lines are dirty, i.e. parseable but failing the validation, with either
+ * a zero quarter, no ticker or no date. The lines only depend on the seed, and the (ticker,
+ * date) of the clean lines are unique, so that the tickers of several generators only collide
+ * if they share the same prefix.
+ */
+public class StockRowGenerator {
+
+    public static final String HEADER = StockExportWriter.CSV_HEADER.trim();
+
+    private static final List<String> TICKERS = Arrays.asList(
+            "AA", "AXP", "BA", "BAC", "CAT", "CSCO", "CVX", "DD", "DIS", "GE",
+            "HD", "HPQ", "IBM", "INTC", "JNJ", "JPM", "KO", "KRFT", "MCD", "MMM",
+            "MRK", "MSFT", "PFE", "PG", "T", "TRV", "UTX", "VZ", "WMT", "XOM");
+
+    private static final LocalDate FIRST_WEEK = LocalDate.of(2011, 1, 7);
+
+    private final Random random;
+    private final double errorRate;
+    private final String[] tickers;
+    private final long[] volumes;
+    private final long[] nextOpens;
+    private final int[] daysToNextDividends;
+
+    private long rows;
+
+    /**
+     * @param seed of the random lines
+     * @param errorRate ratio of dirty lines, between 0 and 1
+     * @param tickerPrefix prepended to the tickers, at most 6 characters
+     */
+    public StockRowGenerator(final long seed, final double errorRate, final String tickerPrefix) {
+        this.random = new Random(seed);
+        this.errorRate = errorRate;
+        this.tickers = TICKERS.stream().map(ticker -> tickerPrefix + ticker).toArray(String[]::new);
+        this.volumes = new long[tickers.length];
+        this.nextOpens = new long[tickers.length];
+        this.daysToNextDividends = new int[tickers.length];
+        for (int i = 0; i < tickers.length; i++) {
+            nextOpens[i] = walk(1_000 + random.nextInt(15_000));
+            daysToNextDividends[i] = 1 + random.nextInt(90);
+        }
+    }
+
+    public StockRowGenerator(final long seed, final double errorRate) {
+        this(seed, errorRate, "");
+    }
+
+    /**
+     * @return next line, without its line terminator
+     */
+    public String next() {
+        final int ticker = (int) (rows % tickers.length);
+        final LocalDate date = FIRST_WEEK.plusWeeks(rows / tickers.length);
+        final boolean firstWeek = rows < tickers.length;
+        rows++;
+
+        final long open = nextOpens[ticker];
+        final long close = walk(open);
+        final long high = Math.max(open, close) + random.nextInt(100);
+        final long low = Math.max(1, Math.min(open, close) - random.nextInt(100));
+        final long volume = 5_000_000 + (long) (random.nextDouble() * 500_000_000);
+        final long nextOpen = walk(close);
+        final long nextClose = walk(nextOpen);
+        final int daysToNextDividend = daysToNextDividends[ticker] < 7 ? 84 + random.nextInt(14) : daysToNextDividends[ticker] - 7;
+
+        int quarter = (date.getMonthValue() - 1) / 3 + 1;
+        String tickerName = tickers[ticker];
+        String dateText = date.getMonthValue() + "/" + date.getDayOfMonth() + "/" + date.getYear();
+        if (random.nextDouble() < errorRate) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    quarter = 0;
+                    break;
+                case 1:
+                    tickerName = "";
+                    break;
+                default:
+                    dateText = "";
+            }
+        }
+
+        final StringBuilder line = new StringBuilder(160)
+                .append(quarter).append(',')
+                .append(tickerName).append(',')
+                .append(dateText).append(',')
+                .append(price(open)).append(',')
+                .append(price(high)).append(',')
+                .append(price(low)).append(',')
+                .append(price(close)).append(',')
+                .append(volume).append(',')
+                .append(percent(open, close)).append(',');
+        if (!firstWeek) {
+            line.append(percent(volumes[ticker], volume)).append(',').append(volumes[ticker]).append(',');
+        } else {
+            line.append(",,");
+        }
+        line.append(price(nextOpen)).append(',')
+                .append(price(nextClose)).append(',')
+                .append(percent(nextOpen, nextClose)).append(',')
+                .append(daysToNextDividend).append(',')
+                .append(percent(close, close + 5 + random.nextInt(40)));
+
+        nextOpens[ticker] = nextOpen;
+        volumes[ticker] = volume;
+        daysToNextDividends[ticker] = daysToNextDividend;
+        return line.toString();
+    }
+
+    /**
+     * This method writes the header followed by the specified number of lines.
+     *
+     * @param writer to write the lines to
+     * @param count number of lines
+     * @throws IOException if the lines cannot be written
+     */
+    public void write(final Writer writer, final long count) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+        for (long i = 0; i < count; i++) {
+            writer.write(next());
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * @return price in cents moved by up to 5% either way
+     */
+    private long walk(final long cents) {
+        return Math.max(100, cents + (long) (cents * (random.nextDouble() - 0.5) / 10));
+    }
+
+    private static String price(final long cents) {
+        return "$" + BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+
+    private static String percent(final long from, final long to) {
+        return BigDecimal.valueOf((to - from) * 100.0 / from).setScale(5, RoundingMode.HALF_UP).toPlainString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.model.Stock;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockRowGeneratorTest {
+
+    @Test
+    public void testCleanLinesAreUniqueAndParseable() {
+        final StockRowGenerator generator = new StockRowGenerator(42, 0);
+        final StockCsvParser parser = new StockCsvParser();
+        final Set<String> keys = new HashSet<>();
+
+        assertEquals(StockMapper.STOCK, parser.parse(StockRowGenerator.HEADER).get(1));
+        for (int i = 0; i < 10_000; i++) {
+            final Stock stock = StockMapper.toStock(parser.parse(generator.next()));
+            assertTrue(stock.getQuarter() >= 1 && stock.getQuarter() <= 4);
+            assertNotNull(stock.getClose());
+            assertEquals(i >= 30, stock.getPreviousWeeksVolume() != null);
+            assertTrue(keys.add(stock.getTicker() + stock.getStockDate()));
+        }
+    }
+
+    @Test
+    public void testDirtyLinesFailValidation() {
+        final StockRowGenerator generator = new StockRowGenerator(42, 0.25, "X");
+        final StockCsvParser parser = new StockCsvParser();
+
+        int dirty = 0;
+        for (int i = 0; i < 10_000; i++) {
+            final Stock stock = StockMapper.toStock(parser.parse(generator.next()));
+            if (stock.getQuarter() <= 0 || stock.getTicker() == null || stock.getTicker().isEmpty() || stock.getStockDate() == null) {
+                dirty++;
+            } else {
+                assertTrue(stock.getTicker().startsWith("X"));
+            }
+        }
+        assertTrue(dirty > 2_300 && dirty < 2_700, String.valueOf(dirty));
+    }
+}
@@ -0,0 +1,61 @@
+package com.coding.challenge.utility;
+
+import com.coding.challenge.model.Stock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StockSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSameStocksAsWritten() throws IOException {
+        final List<Stock> stocks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            stocks.add(new Stock(1 + i % 4, "T" + (i / 100), LocalDate.of(2011, 1, 7).plusWeeks(i % 100),
+                    new BigDecimal("15.82"), new BigDecimal("16.72"), new BigDecimal("-15.78"), BigDecimal.valueOf(i, 2),
+                    239655616L + i, 3.79267, -i / 7d, 0L, new BigDecimal("16.71"), new BigDecimal("15.97"), -4.42849,
+                    i, 0.182704));
+        }
+        stocks.add(new Stock(0, null, null, null, null, null, null, null, null, null, null, null, null, null, 0, null));
+        stocks.add(new Stock(2, "Ünïcode", LocalDate.of(1900, 1, 1), null, null, null, null, null, null, null, null, null, null, null, -3, null));
+
+        final Path file = tempDir.resolve("stocks.stks");
+        try (StockSnapshotWriter writer = new StockSnapshotWriter(tempDir)) {
+            for (Stock stock : stocks) {
+                writer.add(stock);
+            }
+            writer.writeTo(file);
+        }
+
+        try (StockSnapshotReader reader = StockSnapshotReader.open(file)) {
+            assertEquals(stocks.size(), reader.size());
+            for (int i = 0; i < stocks.size(); i++) {
+                assertEquals(stocks.get(i).toString(), reader.getStock(i).toString());
+            }
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testNotASnapshot() throws IOException {
+        final Path file = Files.write(tempDir.resolve("stocks.csv"), "quarter,stock,date\n".getBytes());
+
+        assertThrows(IOException.class, () -> StockSnapshotReader.open(file));
+    }
+}
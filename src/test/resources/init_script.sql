@@ -1,3 +1,162 @@
-CREATE TABLE IF NOT EXISTS stock (id SERIAL NOT NULL PRIMARY KEY,quarter NUMERIC(1,0),ticker VARCHAR(10), stock_date DATE,open NUMERIC(10,2),high NUMERIC(10,2),low NUMERIC(10,2),close NUMERIC(10,2),volume NUMERIC(20,0),percent_change_price DECIMAL,percent_change_volume_over_last_week DECIMAL,previous_weeks_volume NUMERIC(20,0),next_weeks_open NUMERIC(10,2),next_weeks_close NUMERIC(10,2),percent_change_next_weeks_price DECIMAL,days_to_next_dividend NUMERIC(5),percent_return_next_dividend DECIMAL);
+CREATE TABLE IF NOT EXISTS stock (id SERIAL NOT NULL,quarter NUMERIC(1,0),ticker VARCHAR(10), stock_date DATE,open NUMERIC(10,2),high NUMERIC(10,2),low NUMERIC(10,2),close NUMERIC(10,2),volume NUMERIC(20,0),percent_change_price DECIMAL,percent_change_volume_over_last_week DECIMAL,previous_weeks_volume NUMERIC(20,0),next_weeks_open NUMERIC(10,2),next_weeks_close NUMERIC(10,2),percent_change_next_weeks_price DECIMAL,days_to_next_dividend NUMERIC(5),percent_return_next_dividend DECIMAL) PARTITION BY RANGE (stock_date);
+-- As in V1_0, the upserts of the stocks relying on it for their ON CONFLICT (ticker, stock_date).
+CREATE UNIQUE INDEX index_name ON stock (ticker, stock_date);
+CREATE INDEX stock_id ON stock (id);
+CREATE INDEX stock_stock_date_brin ON stock USING BRIN (stock_date);
+CREATE TABLE stock_default PARTITION OF stock DEFAULT;
+
+-- Creates the partition of the specified year, unless it exists, moving its stocks out of the default partition
+-- first as the partition could not be attached otherwise. The stocks moved being neither inserted into nor
+-- deleted from stock, the stock_quarter triggers do not fire.
+CREATE FUNCTION create_stock_partition(partition_year INTEGER) RETURNS BOOLEAN LANGUAGE plpgsql AS $$
+DECLARE
+    partition_name TEXT := 'stock_y' || partition_year;
+    from_date DATE := make_date(partition_year, 1, 1);
+    to_date DATE := make_date(partition_year + 1, 1, 1);
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('stock_partition'), partition_year);
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE stock INCLUDING DEFAULTS)', partition_name);
+    EXECUTE format('WITH moved AS (DELETE FROM stock_default WHERE stock_date >= %L AND stock_date < %L RETURNING *) INSERT INTO %I SELECT * FROM moved',
+                   from_date, to_date, partition_name);
+    EXECUTE format('ALTER TABLE stock ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', partition_name, from_date, to_date);
+    RETURN TRUE;
+END $$;
+
+-- Creates the partitions of the current year and of the specified number of years ahead, as well as of the years
+-- of the stocks in the default partition, returning how many partitions were created.
+CREATE FUNCTION create_stock_partitions(years_ahead INTEGER) RETURNS INTEGER LANGUAGE plpgsql AS $$
+DECLARE
+    partition_year INTEGER;
+    created INTEGER := 0;
+BEGIN
+    FOR partition_year IN
+        SELECT DISTINCT EXTRACT(YEAR FROM stock_date)::INTEGER FROM stock_default WHERE stock_date IS NOT NULL
+        UNION
+        SELECT generate_series(EXTRACT(YEAR FROM current_date)::INTEGER, EXTRACT(YEAR FROM current_date)::INTEGER + years_ahead)
+        ORDER BY 1
+    LOOP
+        IF create_stock_partition(partition_year) THEN
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END $$;
+
+SELECT create_stock_partitions(1);
+SELECT create_stock_partition(2011);
+
+CREATE TABLE stock_quarter (
+    ticker VARCHAR(10) NOT NULL,
+    quarter_start DATE NOT NULL,
+    first_date DATE NOT NULL,
+    last_date DATE NOT NULL,
+    open NUMERIC(10,2),
+    high NUMERIC(10,2),
+    low NUMERIC(10,2),
+    close NUMERIC(10,2),
+    volume NUMERIC(22,0),
+    average_percent_change_price DECIMAL,
+    stock_count INTEGER NOT NULL,
+    PRIMARY KEY (ticker, quarter_start)
+);
+
+-- Recomputes the specified quarters from their stocks, i.e. a range scan of the (ticker, stock_date) index,
+-- so that stocks overwritten or deleted are accounted for. The quarters are locked in order first, so that
+-- concurrent transactions touching the same quarter recompute it one after the other.
+CREATE FUNCTION refresh_stock_quarters(tickers VARCHAR[], quarter_starts DATE[]) RETURNS VOID LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext(k.ticker), k.quarter_start - DATE '1970-01-01')
+    FROM unnest(tickers, quarter_starts) AS k(ticker, quarter_start)
+    ORDER BY k.ticker, k.quarter_start;
+
+    DELETE FROM stock_quarter q
+    USING unnest(tickers, quarter_starts) AS k(ticker, quarter_start)
+    WHERE q.ticker = k.ticker AND q.quarter_start = k.quarter_start
+      AND NOT EXISTS (SELECT 1 FROM stock s WHERE s.ticker = k.ticker AND s.stock_date >= k.quarter_start AND s.stock_date < (k.quarter_start + INTERVAL '3 months')::DATE);
+
+    INSERT INTO stock_quarter (ticker, quarter_start, first_date, last_date, open, high, low, close, volume, average_percent_change_price, stock_count)
+    SELECT k.ticker, k.quarter_start, a.first_date, a.last_date, a.open, a.high, a.low, a.close, a.volume, a.average_percent_change_price, a.stock_count
+    FROM unnest(tickers, quarter_starts) AS k(ticker, quarter_start)
+    CROSS JOIN LATERAL (
+        SELECT MIN(s.stock_date) AS first_date,
+               MAX(s.stock_date) AS last_date,
+               (ARRAY_AGG(s.open ORDER BY s.stock_date))[1] AS open,
+               MAX(s.high) AS high,
+               MIN(s.low) AS low,
+               (ARRAY_AGG(s.close ORDER BY s.stock_date DESC))[1] AS close,
+               SUM(s.volume) AS volume,
+               AVG(s.percent_change_price) AS average_percent_change_price,
+               COUNT(*) AS stock_count
+        FROM stock s
+        WHERE s.ticker = k.ticker AND s.stock_date >= k.quarter_start AND s.stock_date < (k.quarter_start + INTERVAL '3 months')::DATE
+        HAVING COUNT(*) > 0
+    ) a
+    ON CONFLICT (ticker, quarter_start) DO UPDATE SET
+        first_date = EXCLUDED.first_date,
+        last_date = EXCLUDED.last_date,
+        open = EXCLUDED.open,
+        high = EXCLUDED.high,
+        low = EXCLUDED.low,
+        close = EXCLUDED.close,
+        volume = EXCLUDED.volume,
+        average_percent_change_price = EXCLUDED.average_percent_change_price,
+        stock_count = EXCLUDED.stock_count;
+END $$;
+
+CREATE FUNCTION stock_quarter_on_insert() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    IF current_setting('stock.quarters', true) = 'deferred' THEN
+        RETURN NULL;
+    END IF;
+    PERFORM refresh_stock_quarters(ARRAY_AGG(k.ticker), ARRAY_AGG(k.quarter_start))
+    FROM (SELECT DISTINCT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start
+          FROM new_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL) k;
+    RETURN NULL;
+END $$;
+
+CREATE FUNCTION stock_quarter_on_update() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    IF current_setting('stock.quarters', true) = 'deferred' THEN
+        RETURN NULL;
+    END IF;
+    PERFORM refresh_stock_quarters(ARRAY_AGG(k.ticker), ARRAY_AGG(k.quarter_start))
+    FROM (SELECT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start FROM old_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL
+          UNION
+          SELECT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start FROM new_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL) k;
+    RETURN NULL;
+END $$;
+
+CREATE FUNCTION stock_quarter_on_delete() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    IF current_setting('stock.quarters', true) = 'deferred' THEN
+        RETURN NULL;
+    END IF;
+    PERFORM refresh_stock_quarters(ARRAY_AGG(k.ticker), ARRAY_AGG(k.quarter_start))
+    FROM (SELECT DISTINCT ticker, date_trunc('quarter', stock_date)::DATE AS quarter_start
+          FROM old_stocks WHERE ticker IS NOT NULL AND stock_date IS NOT NULL) k;
+    RETURN NULL;
+END $$;
+
+-- A trigger with transition tables can only handle one event.
+CREATE TRIGGER stock_quarter_insert AFTER INSERT ON stock
+    REFERENCING NEW TABLE AS new_stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_quarter_on_insert();
+
+CREATE TRIGGER stock_quarter_update AFTER UPDATE ON stock
+    REFERENCING OLD TABLE AS old_stocks NEW TABLE AS new_stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_quarter_on_update();
+
+CREATE TRIGGER stock_quarter_delete AFTER DELETE ON stock
+    REFERENCING OLD TABLE AS old_stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_quarter_on_delete();
+
+CREATE UNLOGGED TABLE stock_staging (request_id VARCHAR(36) NOT NULL,line_number BIGINT NOT NULL,quarter NUMERIC(1,0),ticker VARCHAR(10), stock_date DATE,open NUMERIC(10,2),high NUMERIC(10,2),low NUMERIC(10,2),close NUMERIC(10,2),volume NUMERIC(20,0),percent_change_price DECIMAL,percent_change_volume_over_last_week DECIMAL,previous_weeks_volume NUMERIC(20,0),next_weeks_open NUMERIC(10,2),next_weeks_close NUMERIC(10,2),percent_change_next_weeks_price DECIMAL,days_to_next_dividend NUMERIC(5),percent_return_next_dividend DECIMAL);
+CREATE INDEX stock_staging_request_id ON stock_staging (request_id);
+
+CREATE TABLE ingest_checkpoint (request_id VARCHAR(36) NOT NULL PRIMARY KEY,instance_id VARCHAR(255),file_name VARCHAR(255),file_path VARCHAR(4096) NOT NULL,mode VARCHAR(16) NOT NULL,last_line BIGINT NOT NULL DEFAULT 0,byte_offset BIGINT NOT NULL DEFAULT 0,rows_read BIGINT NOT NULL DEFAULT 0,rows_ingested BIGINT NOT NULL DEFAULT 0,error_rows BIGINT NOT NULL DEFAULT 0,updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now());
+CREATE INDEX ingest_checkpoint_instance_id ON ingest_checkpoint (instance_id);
 
 INSERT INTO stock(quarter,ticker,stock_date,open,high,low,close,volume,percent_change_price,percent_change_volume_over_last_week,previous_weeks_volume,next_weeks_open,next_weeks_close,percent_change_next_weeks_price,days_to_next_dividend,percent_return_next_dividend) VALUES (1,'TEST','2011-01-28',15.87,16.63,15.82,16.13,151379173,1.63831,9.355500109,138428495,16.18,17.14,5.93325,5,0.185989);
\ No newline at end of file